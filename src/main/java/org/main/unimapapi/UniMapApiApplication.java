@@ -3,6 +3,7 @@ package org.main.unimapapi;
 // Import the necessary Spring Boot classes
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 
 /*
@@ -15,8 +16,10 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * - @ComponentScan: tells Spring where to look for components, services, controllers, etc.
  *
  * The scanBasePackages parameter specifies where to look for project components
+ * @EnableScheduling runs the periodic @Scheduled jobs (e.g. catalog refresh)
  */
 @SpringBootApplication(scanBasePackages = "org.main.unimapapi")
+@EnableScheduling
 public class UniMapApiApplication {
 
     public static void main(String[] args) {
@@ -15,7 +15,7 @@ import java.util.Properties;
  * UniMap application configuration class
  *
  * Responsible for:
- * - Connection to the mail server (SMTP)
+ * - Connection to the mail server (SMTP), overridable with MAIL_SMTP_* (e.g. a local test SMTP server)
  * - Loading sensitive data from config.properties
  * - OAuth2 settings (Google and Facebook)
  * - Encryption (AES)
@@ -23,16 +23,6 @@ import java.util.Properties;
 @Configuration
 @Data
 public class AppConfig {
-    @Getter
-    private static final String sender = "unimapofficial@gmail.com";
-
-    // Google's SMTP server
-    @Getter
-    private static final String host = "smtp.gmail.com";
-    // SMTP server port
-    @Getter
-    private static final String port = "587";
-
     private static final Properties properties = new Properties();
 
     static {
@@ -66,6 +56,42 @@ public class AppConfig {
         return properties.getProperty("PASSWORD_email");
     }
 
+    public static String getSender() {
+        return properties.getProperty("MAIL_SENDER", "unimapofficial@gmail.com");
+    }
+
+    // SMTP server, Google's by default
+    public static String getHost() {
+        return properties.getProperty("MAIL_SMTP_HOST", "smtp.gmail.com");
+    }
+
+    // SMTP server port
+    public static String getPort() {
+        return properties.getProperty("MAIL_SMTP_PORT", "587");
+    }
+
+    public static boolean isMailAuth() {
+        return Boolean.parseBoolean(properties.getProperty("MAIL_SMTP_AUTH", "true"));
+    }
+
+    public static boolean isMailStartTls() {
+        return Boolean.parseBoolean(properties.getProperty("MAIL_SMTP_STARTTLS", "true"));
+    }
+
+    // Mails sent over one SMTP connection per queue read
+    public static int getMailBatchSize() {
+        return Integer.parseInt(properties.getProperty("MAIL_BATCH_SIZE", "50"));
+    }
+
+    public static long getMailPollIntervalMs() {
+        return Long.parseLong(properties.getProperty("MAIL_POLL_INTERVAL_MS", "5000"));
+    }
+
+    // Attempts before a mail is marked FAILED
+    public static int getMailMaxAttempts() {
+        return Integer.parseInt(properties.getProperty("MAIL_MAX_ATTEMPTS", "8"));
+    }
+
     public static String getAccessKey() {
         return properties.getProperty("ACCESS_SECRET_KEY");
     }
@@ -90,10 +116,84 @@ public class AppConfig {
     @Getter
     private static final long EXPIRATION_TIME_REFRESH = 86400000;
 
+    // Burst size of the rate limit of a route group (AUTH, RESOURCES, COMMENTS, LOG, DEFAULT)
+    public static int getRateLimitBurst(String group, int defaultBurst) {
+        return Integer.parseInt(properties.getProperty("RATE_LIMIT_" + group + "_BURST", String.valueOf(defaultBurst)));
+    }
+
+    // Sustained number of requests per second allowed for one client in a route group
+    public static double getRateLimitPerSecond(String group, double defaultPerSecond) {
+        return Double.parseDouble(properties.getProperty("RATE_LIMIT_" + group + "_PER_SECOND", String.valueOf(defaultPerSecond)));
+    }
+
+    // Maximum number of verified JWTs remembered per token type
+    public static int getJwtCacheSize() {
+        return Integer.parseInt(properties.getProperty("JWT_CACHE_SIZE", "10000"));
+    }
+
     public static String getLogLevel() {
         return properties.getProperty("LOG_LEVEL", "INFO");
     }
 
+    // Number of log records that may wait for the writer thread, per log file
+    public static int getLogBufferCapacity() {
+        return Integer.parseInt(properties.getProperty("LOG_BUFFER_CAPACITY", "8192"));
+    }
+
+    // Size after which the active log segment is sealed and compressed (segments also roll daily)
+    public static long getLogSegmentMaxBytes() {
+        return Long.parseLong(properties.getProperty("LOG_SEGMENT_MAX_BYTES", String.valueOf(16 * 1024 * 1024)));
+    }
+
+    public static int getLogRetentionDays() {
+        return Integer.parseInt(properties.getProperty("LOG_RETENTION_DAYS", "30"));
+    }
+
+    public static int getLogMaxSegments() {
+        return Integer.parseInt(properties.getProperty("LOG_MAX_SEGMENTS", "200"));
+    }
+
+    // Largest accepted avatar upload
+    public static long getAvatarMaxBytes() {
+        return Long.parseLong(properties.getProperty("AVATAR_MAX_BYTES", String.valueOf(2 * 1024 * 1024)));
+    }
+
+    // Threads generating avatar thumbnails
+    public static int getAvatarThumbnailWorkers() {
+        return Integer.parseInt(properties.getProperty("AVATAR_THUMBNAIL_WORKERS",
+                String.valueOf(Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2)))));
+    }
+
+    // BCrypt cost of new password hashes, stored hashes with another cost are upgraded on login
+    public static int getBcryptCost() {
+        return Integer.parseInt(properties.getProperty("BCRYPT_COST", "12"));
+    }
+
+    // Threads hashing / verifying passwords
+    public static int getPasswordHashWorkers() {
+        return Integer.parseInt(properties.getProperty("PASSWORD_HASH_WORKERS",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+    }
+
+    // Hash requests that may wait for a worker before new ones are rejected (503)
+    public static int getPasswordHashQueueCapacity() {
+        return Integer.parseInt(properties.getProperty("PASSWORD_HASH_QUEUE",
+                String.valueOf(4 * Runtime.getRuntime().availableProcessors())));
+    }
+
+    public static long getPasswordHashTimeoutMs() {
+        return Long.parseLong(properties.getProperty("PASSWORD_HASH_TIMEOUT_MS", "5000"));
+    }
+
+    // Subjects / teachers whose comment pages are cached (least recently used ones are evicted)
+    public static int getCommentCacheSize() {
+        return Integer.parseInt(properties.getProperty("COMMENT_CACHE_SIZE", "2000"));
+    }
+
+    public static long getCommentCacheTtlMs() {
+        return Long.parseLong(properties.getProperty("COMMENT_CACHE_TTL_MS", "60000"));
+    }
+
     @Getter
     private static final String SERVER_LOG_FILE = "src/main/resources/org.main.unimapapi/logs/server_logs.xml";
     @Getter
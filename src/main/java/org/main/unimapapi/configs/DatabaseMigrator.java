@@ -0,0 +1,168 @@
+package org.main.unimapapi.configs;
+
+import org.main.unimapapi.utils.ServerLogger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Versioned database migrations, run once at startup
+ *
+ * - scripts: classpath db/migration/V{version}__{description}.sql, applied in version order
+ * - applied versions are recorded in `schema_version` with the SHA-256 of the script;
+ *   a changed script of an applied version stops the startup (add a new version instead)
+ * - each script runs in its own transaction, under a Postgres advisory lock,
+ *   so several instances starting at once apply every version only once
+ *
+ * Disabled with db.migration.enabled=false
+ */
+@Component
+public class DatabaseMigrator {
+    private static final String LOCATION = "classpath:db/migration/V*__*.sql";
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final long ADVISORY_LOCK_KEY = 0x556E694D6170L;
+
+    private final DataSource dataSource;
+    private final boolean enabled;
+
+    private record Migration(int version, String description, String script, String checksum) {
+    }
+
+    public DatabaseMigrator(DataSource dataSource, @Value("${db.migration.enabled:true}") boolean enabled) {
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    public void migrate() throws SQLException, IOException {
+        if (!enabled) {
+            ServerLogger.logServer(ServerLogger.Level.INFO, "Database migrations are disabled");
+            return;
+        }
+
+        List<Migration> migrations = loadMigrations();
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SELECT pg_advisory_lock(" + ADVISORY_LOCK_KEY + ")");
+            }
+            try {
+                createVersionTable(connection);
+                Map<Integer, String> applied = findApplied(connection);
+
+                for (Migration migration : migrations) {
+                    String checksum = applied.get(migration.version());
+                    if (checksum == null) {
+                        apply(connection, migration);
+                    } else if (!checksum.equals(migration.checksum())) {
+                        throw new IllegalStateException("Migration V" + migration.version()
+                                + " was changed after it had been applied");
+                    }
+                }
+            } finally {
+                connection.setAutoCommit(autoCommit);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SELECT pg_advisory_unlock(" + ADVISORY_LOCK_KEY + ")");
+                }
+            }
+        }
+    }
+
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        long start = System.currentTimeMillis();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement();
+             PreparedStatement record = connection.prepareStatement(
+                     "INSERT INTO schema_version (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)")) {
+            // The driver splits the script into statements itself (dollar-quoted blocks included)
+            statement.execute(migration.script());
+
+            record.setInt(1, migration.version());
+            record.setString(2, migration.description());
+            record.setString(3, migration.checksum());
+            record.setLong(4, System.currentTimeMillis() - start);
+            record.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            ServerLogger.logServer(ServerLogger.Level.ERROR, "Migration V" + migration.version() + " failed: " + e.getMessage());
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        ServerLogger.logServer(ServerLogger.Level.INFO, "Applied migration V" + migration.version() + " "
+                + migration.description() + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static void createVersionTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TABLE IF NOT EXISTS schema_version (
+                        version INTEGER PRIMARY KEY,
+                        description VARCHAR(255) NOT NULL,
+                        checksum CHAR(64) NOT NULL,
+                        execution_ms BIGINT NOT NULL,
+                        applied_at TIMESTAMP NOT NULL DEFAULT now()
+                    )""");
+        }
+    }
+
+    private static Map<Integer, String> findApplied(Connection connection) throws SQLException {
+        Map<Integer, String> applied = new TreeMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private static List<Migration> loadMigrations() throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(LOCATION)) {
+            Matcher matcher = FILE_NAME.matcher(resource.getFilename() != null ? resource.getFilename() : "");
+            if (!matcher.matches()) {
+                continue;
+            }
+            String script;
+            try (InputStream input = resource.getInputStream()) {
+                script = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            migrations.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '),
+                    script, sha256Hex(script)));
+        }
+        migrations.sort(Comparator.comparingInt(Migration::version));
+        return migrations;
+    }
+
+    private static String sha256Hex(String script) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package org.main.unimapapi.configs;
 
+import jakarta.servlet.DispatcherType;
+import org.main.unimapapi.utils.JwtAuthenticationFilter;
+import org.main.unimapapi.utils.JwtToken;
 import org.main.unimapapi.utils.OAuth2AuthenticationSuccessHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -11,12 +14,14 @@ import org.springframework.security.oauth2.client.registration.ClientRegistratio
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 /*
  * Security configuration for UniMap application
  *
  * Configures:
  * - public and secure routes
+ * - JWT access token authentication (JwtAuthenticationFilter)
  * - OAuth2 authorisation via Google and Facebook
  * - handling of successful login via custom handler
  * - logout
@@ -26,6 +31,8 @@ import org.springframework.security.web.SecurityFilterChain;
 public class SecurityConfig {
     @Autowired
     private OAuth2AuthenticationSuccessHandler oAuth2AuthenticationSuccessHandler;
+    @Autowired
+    private JwtToken jwtToken;
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -36,9 +43,17 @@ public class SecurityConfig {
     // HTTP Security Configuration
     private void configureHttpSecurity(HttpSecurity http) throws Exception {
         http.csrf(csrf -> csrf.disable());
+        // The access token is verified once here, controllers get the resulting principal
+        http.addFilterBefore(new JwtAuthenticationFilter(jwtToken), UsernamePasswordAuthenticationFilter.class);
         http
                 .authorizeHttpRequests(authorizeRequests ->
                         authorizeRequests
+                                // Async dispatch of an already authorised request (streamed responses, e.g. admin bulk deletion)
+                                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                                // Administrative endpoints need an admin access token
+                                .requestMatchers("/api/unimap_pc/admin/**").hasRole("ADMIN")
+                                .requestMatchers("/api/unimap_pc/log/segments").hasRole("ADMIN")
+                                .requestMatchers("/api/unimap_pc/metrics").hasRole("ADMIN")
                                 // List all endpoints accessible without authorisation
                                 .requestMatchers(
                                         // Swagger
@@ -64,6 +79,7 @@ public class SecurityConfig {
 
                                         "/api/unimap_pc/news/all",
                                         "/api/unimap_pc/log",
+                                        "/api/unimap_pc/log/batch",
 
                                         "/api/unimap_pc/comments/teacher/**",
                                         "/api/unimap_pc/comments/subject/**",
@@ -72,6 +88,7 @@ public class SecurityConfig {
                                         "/api/unimap_pc/news/all",
 
                                         "/api/unimap_pc/user/email/**",
+                                        "/api/unimap_pc/user/*/avatar",
                                          "/api/unimap_pc/user/delete/comments/**",
                                         "/api/unimap_pc/user/delete/all/**"
                                          // TOD O: error page "/error"
@@ -0,0 +1,46 @@
+package org.main.unimapapi.configs;
+
+import org.main.unimapapi.utils.LimitedDataSource;
+import org.main.unimapapi.utils.ServerLogger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/*
+ * Extra setup of the virtual-thread mode (spring.threads.virtual.enabled=true)
+ *
+ * Spring Boot itself then runs Tomcat requests, @Scheduled and @Async work on virtual threads;
+ * this configuration adds what the blocking JDBC code needs in that mode:
+ * - the DataSource is wrapped in LimitedDataSource, so no more queries run at once than the pool has connections
+ * - VirtualThreadPinningMonitor reports virtual threads pinned to their carrier thread
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    public static BeanPostProcessor jdbcConcurrencyLimiter(
+            @Value("${db.limiter.max-concurrent:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrent,
+            @Value("${db.limiter.wait-timeout-ms:10000}") long waitTimeoutMs) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof LimitedDataSource)) {
+                    ServerLogger.logServer(ServerLogger.Level.INFO, "Virtual threads enabled, at most " + maxConcurrent
+                            + " concurrent connections for DataSource '" + beanName + "'");
+                    return new LimitedDataSource(dataSource, maxConcurrent, waitTimeoutMs);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(@Value("${jfr.pinned-threshold-ms:20}") long thresholdMs) {
+        return new VirtualThreadPinningMonitor(thresholdMs);
+    }
+}
@@ -0,0 +1,73 @@
+package org.main.unimapapi.configs;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.main.unimapapi.utils.ServerLogger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/*
+ * Watches JFR `jdk.VirtualThreadPinned` events in-process
+ *
+ * A virtual thread that blocks inside `synchronized` (or native code) keeps its carrier thread,
+ * with few carriers that stalls unrelated requests. Every pin longer than the threshold
+ * is counted and logged with the top of its stack, so the offending monitor can be replaced by a lock
+ */
+public class VirtualThreadPinningMonitor {
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 5;
+
+    private final long thresholdMs;
+    private RecordingStream stream;
+
+    private final LongAdder pinned = new LongAdder();
+    private final AtomicLong longestPinMillis = new AtomicLong();
+
+    public record Stats(long thresholdMs, long pinned, long longestPinMillis) {
+    }
+
+    public VirtualThreadPinningMonitor(long thresholdMs) {
+        this.thresholdMs = thresholdMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent(EVENT, this::onPinned);
+        stream.startAsync();
+    }
+
+    public Stats getStats() {
+        return new Stats(thresholdMs, pinned.sum(), longestPinMillis.get());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        long millis = event.getDuration().toMillis();
+        pinned.increment();
+        longestPinMillis.accumulateAndGet(millis, Math::max);
+
+        String frames = "";
+        if (event.getStackTrace() != null) {
+            List<RecordedFrame> top = event.getStackTrace().getFrames().stream().limit(LOGGED_FRAMES).toList();
+            frames = top.stream()
+                    .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber())
+                    .collect(Collectors.joining(" <- "));
+        }
+        ServerLogger.logServer(ServerLogger.Level.WARNING, "Virtual thread pinned for " + millis + " ms at " + frames);
+    }
+}
@@ -0,0 +1,129 @@
+package org.main.unimapapi.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.main.unimapapi.dtos.BulkCommentDeleteRequest;
+import org.main.unimapapi.entities.CommentKind;
+import org.main.unimapapi.services.CatalogCacheService;
+import org.main.unimapapi.services.CommentService;
+import org.main.unimapapi.utils.ServerLogger;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Controller for administrative operations
+ *
+ * URL prefix: /api/unimap_pc/admin
+ * Requires JWT access token of an admin (ROLE_ADMIN, see SecurityConfig)
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/unimap_pc/admin")
+public class AdminController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final CatalogCacheService catalogCacheService;
+    private final CommentService commentService;
+    private final ObjectMapper objectMapper;
+
+    /*
+     * Method: POST
+     * Endpoint: /catalog/refresh
+     * Response: version and size of the freshly loaded catalog snapshot
+     */
+    @PostMapping("/catalog/refresh")
+    public ResponseEntity<Map<String, Object>> refreshCatalog() {
+        try {
+            CatalogCacheService.CatalogSnapshot snapshot = catalogCacheService.refresh();
+            return ResponseEntity.ok(Map.of(
+                    "version", snapshot.version(),
+                    "subjects", snapshot.subjects().size(),
+                    "teachers", snapshot.teachers().size()
+            ));
+        } catch (Exception e) {
+            ServerLogger.logServer(ServerLogger.Level.ERROR, "Error refreshing catalog: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /*
+     * Method: POST
+     * Endpoint: /comments/bulk-delete
+     * Body: { "kind", "commentIds", "userId", "entityId", "from", "to" } (see BulkCommentDeleteRequest)
+     * Response: application/x-ndjson, one line per deleted chunk, then the result:
+     *   {"status":"deleting","kind":"subject","deleted":500,"total":1200}
+     *   {"status":"done","deleted":1200}  or  {"status":"failed","deleted":500,"error":"..."}
+     * Chunks are committed one by one, on failure the comments counted in "deleted" are gone
+     * 400 if nothing is selected, the kind is unknown or commentIds come without a kind
+     */
+    @PostMapping("/comments/bulk-delete")
+    public ResponseEntity<StreamingResponseBody> bulkDeleteComments(@RequestBody BulkCommentDeleteRequest request) {
+        List<CommentKind> kinds;
+        try {
+            kinds = commentService.validateBulkDelete(request);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody body = out -> {
+            // Deleted so far per kind, for the failure line
+            Map<String, Integer> deletedByKind = new HashMap<>();
+            try {
+                int deleted = commentService.bulkDelete(kinds, request, progress -> {
+                    deletedByKind.put(progress.kind(), progress.deleted());
+                    writeLine(out, Map.of(
+                            "status", "deleting",
+                            "kind", progress.kind(),
+                            "deleted", progress.deleted(),
+                            "total", progress.total()));
+                });
+                writeLine(out, Map.of("status", "done", "deleted", deleted));
+            } catch (UncheckedIOException e) {
+                // The client went away, nobody is left to tell
+                ServerLogger.logServer(ServerLogger.Level.WARNING, "Bulk comment deletion aborted, client disconnected after "
+                        + sum(deletedByKind) + " deleted comments");
+            } catch (RuntimeException e) {
+                ServerLogger.logServer(ServerLogger.Level.ERROR, "Bulk comment deletion failed: " + e.getMessage());
+                Map<String, Object> failure = new LinkedHashMap<>();
+                failure.put("status", "failed");
+                failure.put("deleted", sum(deletedByKind));
+                failure.put("error", String.valueOf(e.getMessage()));
+                try {
+                    writeLine(out, failure);
+                } catch (UncheckedIOException ignored) {
+                    // Client already gone
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    private static int sum(Map<String, Integer> counts) {
+        return counts.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    // One NDJSON line, flushed at once so the client sees the progress; a closed connection stops the deletion after the current chunk
+    private void writeLine(OutputStream out, Map<String, Object> line) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(line));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package org.main.unimapapi.controllers;
 
+import org.main.unimapapi.dtos.AuthenticatedUser;
 import org.main.unimapapi.repository_queries.CommentsRepository;
+import org.main.unimapapi.dtos.CommentPage_dto;
 import org.main.unimapapi.dtos.Comment_dto;
-import org.main.unimapapi.services.TokenService;
+import org.main.unimapapi.entities.CommentKind;
+import org.main.unimapapi.services.CommentCacheService;
+import org.main.unimapapi.services.CommentService;
 import org.main.unimapapi.utils.ServerLogger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Collections;
@@ -17,29 +22,49 @@ import java.util.Map;
  * Controller for managing comments on subjects and teachers
  *
  * URL prefix: /api/unimap_pc/comments
+ * Writes go through CommentService, which keeps the rating aggregates up to date
+ * First pages of comment lists are served from CommentCacheService
  */
 @RestController
 @RequestMapping("/api/unimap_pc/comments")
 public class CommentsController {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = CommentCacheService.MAX_PAGE_SIZE;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
-    private final CommentsRepository commentsRepository;
-    private final TokenService tokenService;
+    private final CommentCacheService commentCacheService;
+    private final CommentService commentService;
 
     @Autowired
-    public CommentsController(CommentsRepository commentsRepository, TokenService tokenService) {
-        this.commentsRepository = commentsRepository;
-        this.tokenService = tokenService;
+    public CommentsController(CommentCacheService commentCacheService, CommentService commentService) {
+        this.commentCacheService = commentCacheService;
+        this.commentService = commentService;
     }
 
     /*
      * Method: GET
-     * Endpoint: /subject/{subject_id}
+     * Endpoint: /subject/{subject_id}?sort=newest|rating&cursor&limit
+     * Response: JSON array with one page of comments (at most `limit`, default 50, max 200);
+     * header X-Next-Cursor carries the `cursor` of the next page and is missing on the last page
+     * Without any of sort, cursor and limit: all comments (newest first), as before pagination
      */
     @GetMapping("/subject/{subject_id}")
-    public ResponseEntity<List<Comment_dto>> getAllSubjectsComments(@PathVariable("subject_id") String subjectId) {
+    public ResponseEntity<List<Comment_dto>> getAllSubjectsComments(@PathVariable("subject_id") String subjectId,
+                                                                    @RequestParam(value = "sort", required = false) String sort,
+                                                                    @RequestParam(value = "cursor", required = false) String cursor,
+                                                                    @RequestParam(value = "limit", required = false) Integer limit) {
         try {
-            List<Comment_dto> subjectsList = commentsRepository.getAllSubjectsComments(subjectId);
-            return ResponseEntity.ok(subjectsList);
+            if (sort == null && cursor == null && limit == null) {
+                return ResponseEntity.ok(commentCacheService.getAll(CommentKind.SUBJECT, subjectId, CommentsRepository.Sort.NEWEST));
+            }
+            int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+            if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                return ResponseEntity.badRequest().build();
+            }
+            CommentPage_dto page = commentCacheService.getPage(CommentKind.SUBJECT, subjectId, CommentsRepository.Sort.of(sort), cursor, pageSize);
+            return pageResponse(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             ServerLogger.logServer(ServerLogger.Level.ERROR, "Error fetching comments for subject: " + subjectId);
            // e.printStackTrace();
@@ -49,13 +74,26 @@ public class CommentsController {
 
     /*
      * Method: GET
-     * Endpoint: /teacher/{teacher_id}
+     * Endpoint: /teacher/{teacher_id}?sort=newest|rating&cursor&limit
+     * Paginated like /subject/{subject_id}
      */
     @GetMapping("/teacher/{teacher_id}")
-    public ResponseEntity<List<Comment_dto>> getAllTeachersComments(@PathVariable("teacher_id") String teacherId) {
+    public ResponseEntity<List<Comment_dto>> getAllTeachersComments(@PathVariable("teacher_id") String teacherId,
+                                                                    @RequestParam(value = "sort", required = false) String sort,
+                                                                    @RequestParam(value = "cursor", required = false) String cursor,
+                                                                    @RequestParam(value = "limit", required = false) Integer limit) {
         try {
-            List<Comment_dto> teachersList = commentsRepository.getAllTeachersComments(teacherId);
-            return ResponseEntity.ok(teachersList);
+            if (sort == null && cursor == null && limit == null) {
+                return ResponseEntity.ok(commentCacheService.getAll(CommentKind.TEACHER, teacherId, CommentsRepository.Sort.NEWEST));
+            }
+            int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+            if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                return ResponseEntity.badRequest().build();
+            }
+            CommentPage_dto page = commentCacheService.getPage(CommentKind.TEACHER, teacherId, CommentsRepository.Sort.of(sort), cursor, pageSize);
+            return pageResponse(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             ServerLogger.logServer(ServerLogger.Level.ERROR, "Error fetching comments for teacher: " + teacherId);
         //    e.printStackTrace();
@@ -63,29 +101,52 @@ public class CommentsController {
         }
     }
 
+    /*
+     * Method: GET
+     * Endpoint: /{kind}/{id}/summary, kind = subject | teacher
+     * Response: { "kind", "id", "count", "sum", "average", "histogram": [1-star, ..., 5-star counts] }, served from memory
+     */
+    @GetMapping("/{kind}/{id}/summary")
+    public ResponseEntity<CommentService.RatingSummary> getRatingSummary(@PathVariable("kind") String kind, @PathVariable("id") String id) {
+        CommentKind commentKind;
+        try {
+            commentKind = CommentKind.of(kind);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return ResponseEntity.ok(commentService.getRatingSummary(commentKind, id));
+        } catch (Exception e) {
+            ServerLogger.logServer(ServerLogger.Level.ERROR, "Error fetching rating summary of " + kind + " " + id + ": " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /*
      * Method: POST
      * Endpoint: /subject
-     * Authorisation header required (JWT access token)
+     * Authorisation header required (JWT access token, verified by JwtAuthenticationFilter)
+     * Response: 201, 400 for a rating outside 1..5
      */
     @PostMapping("/subject")
-    public ResponseEntity<Void> addNewSubjectComment(@RequestBody Map<String, Object> payload, @RequestHeader("Authorization") String accessToken) {
+    public ResponseEntity<Void> addNewSubjectComment(@RequestBody Map<String, Object> payload, @AuthenticationPrincipal AuthenticatedUser user) {
         try {
-            String token = accessToken.replace("Bearer ", "");
-            String username = tokenService.getLoginFromAccessToken(token);
-            if (!tokenService.validateAccessToken(token, username)) {
+            // The author is the owner of the token; tokens issued before the id claim carry no id
+            if (user == null || user.id() == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
 
-            int userId = Integer.parseInt((String) payload.get("user_id"));
             String subjectCode = (String) payload.get("code");
             String description = (String) payload.get("text");
             int rating = (int) payload.get("rating");
             int levelAccess = Integer.parseInt((String) payload.get("levelAccess"));
 
-            commentsRepository.addNewSubjectComment(userId, subjectCode, description, rating, levelAccess);
+            commentService.addComment(CommentKind.SUBJECT, user.id(), subjectCode, description, rating, levelAccess);
 
             return ResponseEntity.status(HttpStatus.CREATED).build();
+        } catch (IllegalArgumentException e) {
+            // Rating outside 1..5 (or a malformed number), nothing was stored
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         } catch (Exception e) {
             ServerLogger.logServer(ServerLogger.Level.ERROR, "Error adding new subject comment: " + e.getMessage());
           //  e.printStackTrace();
@@ -96,26 +157,28 @@ public class CommentsController {
     /*
      * Method: POST
      * Endpoint: /teacher
-     * Authorisation header required (JWT access token)
+     * Authorisation header required (JWT access token, verified by JwtAuthenticationFilter)
+     * Response: 201, 400 for a rating outside 1..5
      */
     @PostMapping("/teacher")
-    public ResponseEntity<Void> addNewTeacherComment(@RequestBody Map<String, Object> payload, @RequestHeader("Authorization") String accessToken) {
+    public ResponseEntity<Void> addNewTeacherComment(@RequestBody Map<String, Object> payload, @AuthenticationPrincipal AuthenticatedUser user) {
         try {
-            String token = accessToken.replace("Bearer ", "");
-            String username = tokenService.getLoginFromAccessToken(token);
-            if (!tokenService.validateAccessToken(token, username)) {
+            // The author is the owner of the token; tokens issued before the id claim carry no id
+            if (user == null || user.id() == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
 
-            int userId = Integer.parseInt((String) payload.get("user_id"));
             String teacherId = (String) payload.get("code");
             String description = (String) payload.get("text");
             int rating = (int) payload.get("rating");
             int levelAccess = Integer.parseInt((String) payload.get("levelAccess"));
 
-            commentsRepository.addNewTeacherComment(userId, teacherId, description, rating, levelAccess);
+            commentService.addComment(CommentKind.TEACHER, user.id(), teacherId, description, rating, levelAccess);
 
             return ResponseEntity.status(HttpStatus.CREATED).build();
+        } catch (IllegalArgumentException e) {
+            // Rating outside 1..5 (or a malformed number), nothing was stored
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         } catch (Exception e) {
             ServerLogger.logServer(ServerLogger.Level.ERROR, "Error adding new teacher comment: " + e.getMessage());
           //  e.printStackTrace();
@@ -126,12 +189,17 @@ public class CommentsController {
     /*
      * Method: DELETE
      * Endpoint: /subject/{comment_id}
+     * Authorisation header required; the author may delete the comment, an admin any comment
+     * Response: 204, or 404 if there is no such comment the caller may delete
      */
     @DeleteMapping("/subject/{comment_id}")
-    public ResponseEntity<Void> deleteSubjectComment(@PathVariable("comment_id") int commentId) {
+    public ResponseEntity<Void> deleteSubjectComment(@PathVariable("comment_id") int commentId, @AuthenticationPrincipal AuthenticatedUser user) {
         try {
-            commentsRepository.deleteSubjectComment(commentId);
-            return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+            if (user == null || user.id() == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+            boolean deleted = commentService.deleteComment(CommentKind.SUBJECT, commentId, user.admin() ? null : user.id());
+            return ResponseEntity.status(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND).build();
         } catch (Exception e) {
             ServerLogger.logServer(ServerLogger.Level.ERROR, "Error deleting subject comment: " + e.getMessage());
           //  e.printStackTrace();
@@ -142,16 +210,29 @@ public class CommentsController {
     /*
      * Method: DELETE
      * Endpoint: /teacher/{comment_id}
+     * Authorisation header required; the author may delete the comment, an admin any comment
+     * Response: 204, or 404 if there is no such comment the caller may delete
      */
     @DeleteMapping("/teacher/{comment_id}")
-    public ResponseEntity<Void> deleteTeacherComment(@PathVariable("comment_id") int commentId) {
+    public ResponseEntity<Void> deleteTeacherComment(@PathVariable("comment_id") int commentId, @AuthenticationPrincipal AuthenticatedUser user) {
         try {
-            commentsRepository.deleteTeacherComment(commentId);
-            return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+            if (user == null || user.id() == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+            boolean deleted = commentService.deleteComment(CommentKind.TEACHER, commentId, user.admin() ? null : user.id());
+            return ResponseEntity.status(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND).build();
         } catch (Exception e) {
             ServerLogger.logServer(ServerLogger.Level.ERROR, "Error deleting teacher comment: " + e.getMessage());
         //    e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
-}
\ No newline at end of file
+
+    private static ResponseEntity<List<Comment_dto>> pageResponse(CommentPage_dto page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getComments());
+    }
+}
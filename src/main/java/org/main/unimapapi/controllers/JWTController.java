@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Map;
+import java.util.Optional;
 
 /*
  * Controller to handle JWT Access Token refresh by Refresh Token
@@ -19,7 +20,7 @@ import java.util.Map;
  * Method: POST
  * Endpoint: /refresh
  * Input: { "refreshToken": "." }
- * Output: { "accessToken": "..." } or 401 if the token is invalid
+ * Output: { "accessToken": "..." } or 401 if the token is invalid or its user no longer exists
  */
 @RestController
 @AllArgsConstructor
@@ -37,10 +38,13 @@ public class JWTController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
 
-        String login = tokenService.getLoginFromRefreshToken(refreshToken);
-        String newAccessToken = tokenService.createAccessToken(login);
+        Optional<String> newAccessToken = tokenService.refreshAccessToken(refreshToken);
+        if (newAccessToken.isEmpty()) {
+            ServerLogger.logServer(ServerLogger.Level.WARNING, "Refresh token of a deleted user received.");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
 
       //  System.out.println("I send new access token " + newAccessToken + " for user " + login);
-        return ResponseEntity.ok(Map.of("accessToken", newAccessToken));
+        return ResponseEntity.ok(Map.of("accessToken", newAccessToken.get()));
     }
 }
\ No newline at end of file
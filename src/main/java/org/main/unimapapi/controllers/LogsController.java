@@ -1,9 +1,28 @@
 package org.main.unimapapi.controllers;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
 import org.main.unimapapi.dtos.LogEntry;
+import org.main.unimapapi.utils.LogRecord;
+import org.main.unimapapi.utils.LogSegmentInfo;
 import org.main.unimapapi.utils.ServerLogger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
 /*
  * Controller for receiving logs from the client (frontend application)
  *
@@ -13,10 +32,26 @@ import org.springframework.web.bind.annotation.*;
  * Endpoint: /log
  * Input: JSON object `LogEntry` with type, message and source
  * Response: string about logging success or error
+ *
+ * Method: POST
+ * Endpoint: /log/batch
+ * Input: JSON array or NDJSON stream of `LogEntry` objects, optionally gzip-compressed
+ * Response: { "accepted": n, "rejected": m }
+ *
+ * Method: GET (admin access token required, see SecurityConfig)
+ * Endpoint: /log/segments
+ * Response: list of sealed log segments
  */
 @RestController
+@RequiredArgsConstructor
 @RequestMapping("/api/unimap_pc")
 public class LogsController {
+    // Records handed to the log writer in one claim
+    private static final int WRITER_CHUNK = 256;
+    // Values (valid or not) read from one request; reading stops at the next one and the request gets 413
+    private static final int MAX_BATCH_RECORDS = 10_000;
+
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/log")
     public String receiveClientLog(@RequestBody LogEntry logEntry) {
@@ -28,4 +63,163 @@ public class LogsController {
             return "Error saving client log: " + e.getMessage();
         }
     }
+
+    /*
+     * Method: POST
+     * Endpoint: /log/batch
+     * Header: Content-Encoding: gzip (optional, gzip is also detected from the body itself)
+     *
+     * The body is read token by token, so the whole batch is never held in memory
+     * Parsed records are passed to the log writer in chunks with a single ring claim each
+     * A body with more than MAX_BATCH_RECORDS values is not read further: 413 with the counts of what was logged
+     */
+    @PostMapping("/log/batch")
+    public ResponseEntity<Map<String, Object>> receiveClientLogBatch(HttpServletRequest request) {
+        BatchCounters counters = new BatchCounters();
+        LogRecord[] chunk = new LogRecord[WRITER_CHUNK];
+        int chunkSize = 0;
+
+        try (InputStream body = openBody(request);
+             JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            // A JSON array and a stream of root-level objects (NDJSON) differ only in the first token
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+
+            while (token != null && token != JsonToken.END_ARRAY) {
+                if (counters.parsed == MAX_BATCH_RECORDS) {
+                    // Stop before inflating / parsing any more of the body
+                    counters.flush(chunk, chunkSize);
+                    Map<String, Object> response = counters.toResponse();
+                    response.put("error", "More than " + MAX_BATCH_RECORDS + " records");
+                    return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(response);
+                }
+                counters.parsed++;
+                LogRecord record = token == JsonToken.START_OBJECT ? readRecord(parser) : skipValue(parser);
+                if (record == null) {
+                    counters.rejected++;
+                } else {
+                    chunk[chunkSize++] = record;
+                    if (chunkSize == WRITER_CHUNK) {
+                        counters.flush(chunk, chunkSize);
+                        chunkSize = 0;
+                    }
+                }
+                token = parser.nextToken();
+            }
+            counters.flush(chunk, chunkSize);
+            return ResponseEntity.ok(counters.toResponse());
+        } catch (JsonProcessingException e) {
+            counters.flush(chunk, chunkSize);
+            ServerLogger.logServer(ServerLogger.Level.WARNING, "Malformed client log batch: " + e.getOriginalMessage());
+            Map<String, Object> response = counters.toResponse();
+            response.put("error", "Malformed JSON");
+            return ResponseEntity.badRequest().body(response);
+        } catch (IOException e) {
+            counters.flush(chunk, chunkSize);
+            ServerLogger.logServer(ServerLogger.Level.ERROR, "Failed to read client log batch: " + e.getMessage());
+            return ResponseEntity.badRequest().body(counters.toResponse());
+        }
+    }
+
+    /*
+     * Method: GET
+     * Endpoint: /log/segments?source=server|client&from={epoch ms}&to={epoch ms}&level=INFO|WARNING|ERROR
+     * Admin access token required (SecurityConfig)
+     * Response: sealed log segments matching the range, chosen from the segment index only
+     */
+    @GetMapping("/log/segments")
+    public ResponseEntity<List<LogSegmentInfo>> findLogSegments(
+            @RequestParam(value = "source", defaultValue = "server") String source,
+            @RequestParam(value = "from", defaultValue = "0") long from,
+            @RequestParam(value = "to", defaultValue = "" + Long.MAX_VALUE) long to,
+            @RequestParam(value = "level", defaultValue = "INFO") String level) {
+        try {
+            ServerLogger.Level minLevel = ServerLogger.Level.valueOf(level.toUpperCase());
+            return ResponseEntity.ok(ServerLogger.findSegments("client".equalsIgnoreCase(source), from, to, minLevel));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Request body, transparently un-gzipped when the header says so or the gzip magic bytes are present
+    private InputStream openBody(HttpServletRequest request) throws IOException {
+        BufferedInputStream body = new BufferedInputStream(request.getInputStream());
+        String encoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        if (encoding != null && encoding.toLowerCase().contains("gzip")) {
+            return new GZIPInputStream(body);
+        }
+
+        body.mark(2);
+        int first = body.read();
+        int second = body.read();
+        body.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return new GZIPInputStream(body);
+        }
+        return body;
+    }
+
+    // Reads one LogEntry object field by field; returns null when the entry is not valid
+    private LogRecord readRecord(JsonParser parser) throws IOException {
+        int userId = -1;
+        String timestamp = null;
+        String level = null;
+        String message = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value.isStructStart()) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "userId" -> userId = parser.getValueAsInt(-1);
+                case "timestamp" -> timestamp = parser.getValueAsString();
+                case "level" -> level = parser.getValueAsString();
+                case "message" -> message = parser.getValueAsString();
+                default -> {
+                    // Unknown fields are ignored
+                }
+            }
+        }
+
+        if (level == null || message == null) {
+            return null;
+        }
+        try {
+            return ServerLogger.toClientRecord(new LogEntry(userId, timestamp, level.toUpperCase(), message));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private LogRecord skipValue(JsonParser parser) throws IOException {
+        parser.skipChildren();
+        return null;
+    }
+
+    private static class BatchCounters {
+        private int parsed;
+        private int accepted;
+        private int rejected;
+
+        private void flush(LogRecord[] chunk, int size) {
+            if (size == 0) {
+                return;
+            }
+            int written = ServerLogger.logClientBatch(chunk, size);
+            accepted += written;
+            rejected += size - written;
+        }
+
+        private Map<String, Object> toResponse() {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("accepted", accepted);
+            response.put("rejected", rejected);
+            return response;
+        }
+    }
 }
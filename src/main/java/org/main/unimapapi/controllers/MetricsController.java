@@ -0,0 +1,68 @@
+package org.main.unimapapi.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.main.unimapapi.configs.VirtualThreadPinningMonitor;
+import org.main.unimapapi.services.AvatarThumbnailService;
+import org.main.unimapapi.services.CatalogCacheService;
+import org.main.unimapapi.services.CommentCacheService;
+import org.main.unimapapi.services.CommentService;
+import org.main.unimapapi.services.MailDispatcher;
+import org.main.unimapapi.services.PasswordHasher;
+import org.main.unimapapi.utils.JwtToken;
+import org.main.unimapapi.utils.LimitedDataSource;
+import org.main.unimapapi.utils.ServerLogger;
+import org.main.unimapapi.utils.DDOSProtection.TokenBucketRateLimiter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Controller exposing internal runtime counters of the server
+ *
+ * URL prefix: /api/unimap_pc
+ * Method: GET
+ * Endpoint: /metrics
+ * Admin access token required (SecurityConfig)
+ * Response: JSON object with one section per subsystem
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/unimap_pc")
+public class MetricsController {
+    private final JwtToken jwtToken;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final CatalogCacheService catalogCacheService;
+    private final AvatarThumbnailService avatarThumbnailService;
+    private final MailDispatcher mailDispatcher;
+    private final PasswordHasher passwordHasher;
+    private final CommentService commentService;
+    private final CommentCacheService commentCacheService;
+    private final DataSource dataSource;
+    // Present only in the virtual-thread mode (VirtualThreadConfig)
+    private final ObjectProvider<VirtualThreadPinningMonitor> pinningMonitor;
+
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("logs", ServerLogger.getStats());
+        metrics.put("jwtCache", jwtToken.getCacheStats());
+        metrics.put("rateLimiter", rateLimiter.getStats());
+        metrics.put("catalogCache", catalogCacheService.getStats());
+        metrics.put("avatarThumbnails", avatarThumbnailService.getStats());
+        metrics.put("mail", mailDispatcher.getStats());
+        metrics.put("passwordHashing", passwordHasher.getStats());
+        metrics.put("ratingAggregates", commentService.getStats());
+        metrics.put("commentCache", commentCacheService.getStats());
+        if (dataSource instanceof LimitedDataSource limitedDataSource) {
+            metrics.put("jdbcLimiter", limitedDataSource.getStats());
+        }
+        pinningMonitor.ifAvailable(monitor -> metrics.put("virtualThreadPinning", monitor.getStats()));
+        return ResponseEntity.ok(metrics);
+    }
+}
@@ -2,16 +2,20 @@ package org.main.unimapapi.controllers;
 
 
 import lombok.AllArgsConstructor;
+import org.main.unimapapi.dtos.AuthenticatedUser;
+import org.main.unimapapi.dtos.SubjectPage_dto;
+import org.main.unimapapi.dtos.SubjectSummary_dto;
+import org.main.unimapapi.dtos.Subject_dto;
 import org.main.unimapapi.repository_queries.DataFatcherRepository;
-import org.main.unimapapi.utils.JwtToken;
+import org.main.unimapapi.services.CatalogCacheService;
 import org.main.unimapapi.utils.ServerLogger;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 /*
  * Controller to obtain all available items (subjects)
@@ -20,37 +24,104 @@ import java.util.Map;
  * Requires JWT Access Token
  * Method: GET
  * Endpoint: /resources/subjects
- * Header: Authorisation: Bearer {access_token}
+ * Header: Authorisation: Bearer {access_token} (verified by JwtAuthenticationFilter)
+ * Served from the in-memory catalog snapshot (CatalogCacheService) as pre-encoded JSON,
+ * with ETag / If-None-Match (304) and gzip when the client accepts it
  * Response: JSON with an array of all subjects
+ *
+ * Method: GET
+ * Endpoint: /resources/subjects/search?semester&studyType&type&credits&language&cursor&limit
+ * Header: Authorisation: Bearer {access_token}
+ * All filters are optional; `cursor` is the `nextCursor` of the previous page (keyset pagination by code)
+ * Response: { "subjects": [light subjects without the long texts], "nextCursor": "..." | null }
+ *
+ * Method: GET
+ * Endpoint: /resources/subjects/{code}
+ * Header: Authorisation: Bearer {access_token}
+ * Response: the full subject (all texts and grades) or 404
  */
 @RestController
 @AllArgsConstructor
 @RequestMapping("/api/unimap_pc/")
 public class SubjectController {
-    JwtToken jwtToken;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    CatalogCacheService catalogCacheService;
     DataFatcherRepository dataFatcherRepository;
 
     @GetMapping("resources/subjects")
-    public ResponseEntity<?> getAllSubjects(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader) {
+    public ResponseEntity<?> getAllSubjects(@AuthenticationPrincipal AuthenticatedUser user,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         try {
-            String token = authorizationHeader.replace("Bearer ", "");
-         //   System.out.println("Subject token "+token);
-
-            if (!jwtToken.validateAccessToken(token)) {
-             //   System.out.println("Unauthorized teacher token "+token);
-                ServerLogger.logServer(ServerLogger.Level.ERROR, "Unauthorized teacher token: " + token);
+            if (user == null) {
+                ServerLogger.logServer(ServerLogger.Level.ERROR, "Unauthorized subjects request");
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
           //  System.out.println("Fetching subjects...");
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("subjects", dataFatcherRepository.fetchAllSubjects());
-          //  System.out.println("ODOSLAL SOM "+response);
-
-            return ResponseEntity.ok(response);
+            // Pre-encoded bytes of the current snapshot, 304 if the client already has them
+            return catalogCacheService.getSubjectsJson().toResponse(ifNoneMatch, acceptEncoding);
         } catch (Exception e) {
             ServerLogger.logServer(ServerLogger.Level.ERROR, "Error fetching subjects: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    @GetMapping("resources/subjects/search")
+    public ResponseEntity<SubjectPage_dto> searchSubjects(@AuthenticationPrincipal AuthenticatedUser user,
+                                                          @RequestParam(value = "semester", required = false) String semester,
+                                                          @RequestParam(value = "studyType", required = false) String studyType,
+                                                          @RequestParam(value = "type", required = false) String type,
+                                                          @RequestParam(value = "credits", required = false) Integer credits,
+                                                          @RequestParam(value = "language", required = false) String language,
+                                                          @RequestParam(value = "cursor", required = false) String cursor,
+                                                          @RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        try {
+            if (user == null) {
+                ServerLogger.logServer(ServerLogger.Level.ERROR, "Unauthorized subject search request");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            // One extra row tells whether there is a next page
+            List<SubjectSummary_dto> rows = dataFatcherRepository.searchSubjects(blankToNull(semester), blankToNull(studyType),
+                    blankToNull(type), credits, blankToNull(language), blankToNull(cursor), limit + 1);
+            boolean hasMore = rows.size() > limit;
+            List<SubjectSummary_dto> page = hasMore ? rows.subList(0, limit) : rows;
+            String nextCursor = hasMore ? page.get(page.size() - 1).getCode() : null;
+
+            return ResponseEntity.ok(new SubjectPage_dto(page, nextCursor));
+        } catch (Exception e) {
+            ServerLogger.logServer(ServerLogger.Level.ERROR, "Error searching subjects: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("resources/subjects/{code}")
+    public ResponseEntity<Subject_dto> getSubject(@AuthenticationPrincipal AuthenticatedUser user,
+                                                  @PathVariable("code") String code) {
+        try {
+            if (user == null) {
+                ServerLogger.logServer(ServerLogger.Level.ERROR, "Unauthorized subject request");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            Subject_dto subject = dataFatcherRepository.fetchSubjectByCode(code);
+            if (subject == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(subject);
+        } catch (Exception e) {
+            ServerLogger.logServer(ServerLogger.Level.ERROR, "Error fetching subject " + code + ": " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
 }
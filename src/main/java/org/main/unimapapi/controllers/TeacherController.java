@@ -2,17 +2,15 @@ package org.main.unimapapi.controllers;
 
 
 import lombok.AllArgsConstructor;
-import org.main.unimapapi.repository_queries.DataFatcherRepository;
-import org.main.unimapapi.utils.JwtToken;
+import org.main.unimapapi.dtos.AuthenticatedUser;
+import org.main.unimapapi.services.CatalogCacheService;
 import org.main.unimapapi.utils.ServerLogger;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /*
  * Controller to get a list of all teachers (teachers)
  *
@@ -20,33 +18,29 @@ import java.util.Map;
  * Requires JWT Access Token
  * Method: GET
  * Endpoint: /resources/teachers
- * Header: Authorisation: Bearer {access_token}
+ * Header: Authorisation: Bearer {access_token} (verified by JwtAuthenticationFilter)
+ * Served from the in-memory catalog snapshot (CatalogCacheService) as pre-encoded JSON,
+ * with ETag / If-None-Match (304) and gzip when the client accepts it
  * Response: JSON with list of teachers
  */
 @AllArgsConstructor
 @RestController
 @RequestMapping("/api/unimap_pc/")
 public class TeacherController {
-    JwtToken jwtToken;
-    DataFatcherRepository dataFatcherRepository;
+    CatalogCacheService catalogCacheService;
 
     @GetMapping("resources/teachers")
-    public ResponseEntity<?> getAllTeachers(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader) {
+    public ResponseEntity<?> getAllTeachers(@AuthenticationPrincipal AuthenticatedUser user,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         try {
-            String token = authorizationHeader.replace("Bearer ", "");
-      //      System.out.println("Teacher token "+token);
-
-            if (!jwtToken.validateAccessToken(token)) {
-             //   System.out.println("Unauthorized teacher token "+token);
-                ServerLogger.logServer(ServerLogger.Level.ERROR, "Unauthorized access token: " + token);
+            if (user == null) {
+                ServerLogger.logServer(ServerLogger.Level.ERROR, "Unauthorized teachers request");
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("teachers", dataFatcherRepository.fetchAllTeachers());
-            //System.out.println("ODOSLAL SOM "+response);
-
-            return ResponseEntity.ok(response);
+            // Pre-encoded bytes of the current snapshot, 304 if the client already has them
+            return catalogCacheService.getTeachersJson().toResponse(ifNoneMatch, acceptEncoding);
         } catch (Exception e) {
             ServerLogger.logServer(ServerLogger.Level.ERROR, "Error fetching teachers: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -3,29 +3,33 @@ package org.main.unimapapi.controllers;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.main.unimapapi.configs.AppConfig;
+import org.main.unimapapi.dtos.AuthenticatedUser;
 import org.main.unimapapi.dtos.EmailChangeRequest;
 import org.main.unimapapi.dtos.PasswordChangeRequest;
 import org.main.unimapapi.dtos.User_dto;
 import org.main.unimapapi.dtos.UsernameChangeRequest;
-import org.main.unimapapi.entities.ConfirmationCode;
 import org.main.unimapapi.entities.User;
 import org.main.unimapapi.services.*;
-import org.main.unimapapi.utils.EmailSender;
-import org.main.unimapapi.utils.Hashing;
 import org.main.unimapapi.utils.JwtToken;
 import org.main.unimapapi.utils.ServerLogger;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseCookie;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /*
  * Controller that manages registration, authentication, access restoration,
@@ -37,22 +41,24 @@ import java.util.Optional;
 @RequiredArgsConstructor
 @RequestMapping("/api/unimap_pc/")
 public class UserController {
+    private static final String NOSNIFF_HEADER = "X-Content-Type-Options";
+
     private final UserService userService;
     private final RegistrationService registrationService;
     private final AuthService authService;
     private final JwtToken jwtToken;
-    private final TokenService tokenService;
     private final ConfirmationCodeService confirmationCodeService;
-    private final EmailSender emailSender;
+    private final AvatarService avatarService;
+    private final PasswordHasher passwordHasher;
 
     /*
      * Method: POST
      * Endpoint: /register
      * Body: string "username:password:email:login"
-     * Response: User object or error code
+     * Response: User object, 303 with { "conflicts": ["login" | "email"] } if already registered, or error code
      */
     @PostMapping("register")
-    public ResponseEntity<User> register(@RequestBody String jsonData) {
+    public ResponseEntity<?> register(@RequestBody String jsonData) {
         try {
         //    System.out.println("TEST "+jsonData);
 
@@ -71,29 +77,26 @@ public class UserController {
             String username = parts[0];
             String email = parts[2];
             String password = parts[1];
-            String passwordHash = Hashing.hashPassword(password);
+            String passwordHash = passwordHasher.hash(password);
             String login = parts[3];
 
            // ServerLogger.logServer(ServerLogger.Level.INFO, "Registration attempt: username=" + username + ", email=" + email + ", login=" + login);
 
-           // System.out.println("TEST3");
-            if (userService.findByLogin(login).isPresent() || userService.findByEmail(email).isPresent()) {
-                 //ServerLogger.logServer(ServerLogger.Level.WARNING, "Registration failed: User already exists (login=" + login + ", email=" + email + ")");
-             //   System.out.println("TESTZZZ");
-                return ResponseEntity.status(HttpStatus.SEE_OTHER).build();
-            }
-          //  System.out.println("TEST0");
-
-
+            // Uniqueness of login and email is checked by the INSERT itself (no lookups before it)
             User_dto user_dto = new User_dto(login, email, passwordHash, username, false, false, null, null);
-            User user = registrationService.register(user_dto);
+            RegistrationService.Registration registration = registrationService.register(user_dto);
 
-            if (user == null) {
-                ServerLogger.logServer(ServerLogger.Level.ERROR, "Registration failed: User object is null.");
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            if (!registration.isCreated()) {
+                return ResponseEntity.status(HttpStatus.SEE_OTHER).body(Map.of("conflicts", registration.conflicts()));
             }
             //ServerLogger.logServer(ServerLogger.Level.INFO, "User registered successfully: login=" + login);
+            User user = registration.user();
+            user.setPassword(null);
             return ResponseEntity.ok(user);
+        } catch (RejectedExecutionException e) {
+            return hashingBusy();
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).build();
         } catch (Exception e) {
             ServerLogger.logServer(ServerLogger.Level.ERROR, "Registration error: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -124,8 +127,8 @@ public class UserController {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
 
-            String accessToken = jwtToken.generateAccessToken(user.getLogin());
-            String refreshToken = jwtToken.generateRefreshToken(user.getLogin());
+            String accessToken = jwtToken.generateAccessToken(user.getLogin(), user.getId(), user.isAdmin());
+            String refreshToken = jwtToken.generateRefreshToken(user.getLogin(), user.getId(), user.isAdmin());
 
             ResponseCookie refreshTokenCookie = ResponseCookie.from("refreshToken", refreshToken)
                     .httpOnly(true)
@@ -134,10 +137,8 @@ public class UserController {
                     .maxAge(86400) // 1 day
                     .build();
 
+            // Only avatarHash is sent, the image itself is downloaded (and cached) from /user/{id}/avatar
             user.setPassword(null);
-            if(user.getAvatar() == null) {
-                user.setAvatar("null".getBytes());
-            }
 
 
        //     System.out.println("TEST User info: " + user.getId() + " " + user.getLogin() + " " + user.getEmail() + " " + user.getUsername() + " " + user.isAdmin() + " " + user.isPremium() + " " + user.getAvatarFileName() + " " + Arrays.toString(user.getAvatar()));
@@ -148,6 +149,8 @@ public class UserController {
                             "accessToken", accessToken
                           //  "avatar", base64Avatar
                     ));
+        } catch (RejectedExecutionException e) {
+            return hashingBusy();
         } catch (Exception e) {
             ServerLogger.logServer(ServerLogger.Level.ERROR,
                     "Authentication failed | Error: " + e.getMessage());
@@ -166,10 +169,9 @@ public class UserController {
         try {
             Optional<User> user = userService.findByEmail(email);
             if (user.isPresent()) {
-                String confirmationCode = ConfirmationCodeService.generateRandomCode();                LocalDateTime expirationTime = LocalDateTime.now().plusMinutes(1);
-                ConfirmationCode confirmationCodeEntity = new ConfirmationCode(user.get().getId(), confirmationCode, expirationTime);
-                confirmationCodeService.save(confirmationCodeEntity);
-                emailSender.sendVerificationCode(email, confirmationCode);                return ResponseEntity.ok().build();
+                // The code and its email are stored together, the email is sent by MailDispatcher
+                confirmationCodeService.issueCode(user.get().getId(), email);
+                return ResponseEntity.ok().build();
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
@@ -201,12 +203,14 @@ public class UserController {
 
             if (userService.findByEmail(email).isPresent()) {
                 User user = userService.findByEmail(email).get();
-                user.setPassword(Hashing.hashPassword(new_password));
+                user.setPassword(passwordHasher.hash(new_password));
                 userService.update(user);
                 return ResponseEntity.ok().build();
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
+        } catch (RejectedExecutionException e) {
+            return hashingBusy();
         } catch (Exception e) {
             ServerLogger.logServer(ServerLogger.Level.ERROR,
                     "Change password failed | Error: " + e.getMessage());
@@ -250,16 +254,15 @@ public class UserController {
     /*
      * Method: DELETE
      * Endpoint: /user/delete/all/{userId}
-     * Required: JWT access token
+     * Required: JWT access token of that user or of an admin (verified by JwtAuthenticationFilter)
      */
     @DeleteMapping("user/delete/all/{userId}")
-    private ResponseEntity<Boolean> deleteUserData(@PathVariable String userId,@RequestHeader("Authorization") String accessToken) {
+    private ResponseEntity<Boolean> deleteUserData(@PathVariable String userId, @AuthenticationPrincipal AuthenticatedUser user) {
      //   System.out.println("I have delete userdata request in id: "+userId);
         try {
-            String token = accessToken.replace("Bearer ", "");
-            String username = tokenService.getLoginFromAccessToken(token);
-            if (!tokenService.validateAccessToken(token, username)) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            ResponseEntity<Boolean> denied = checkOwnerOrAdmin(user, userId);
+            if (denied != null) {
+                return denied;
             }
 
         //    System.out.println("I have delete userdata request in id: "+userId);
@@ -275,16 +278,15 @@ public class UserController {
     /*
      * Method: DELETE
      * Endpoint: /user/delete/comments/{userId}
-     * Required: JWT access token
+     * Required: JWT access token of that user or of an admin (verified by JwtAuthenticationFilter)
      */
     @DeleteMapping("user/delete/comments/{userId}")
-    private ResponseEntity<Boolean> deleteUserComments(@PathVariable String userId, @RequestHeader("Authorization") String accessToken) {
+    private ResponseEntity<Boolean> deleteUserComments(@PathVariable String userId, @AuthenticationPrincipal AuthenticatedUser user) {
      //   System.out.println("I have delete user comments request in id: "+userId);
         try {
-            String token = accessToken.replace("Bearer ", "");
-            String username = tokenService.getLoginFromAccessToken(token);
-            if (!tokenService.validateAccessToken(token, username)) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            ResponseEntity<Boolean> denied = checkOwnerOrAdmin(user, userId);
+            if (denied != null) {
+                return denied;
             }
 
             userService.deleteAllUserComments(Long.parseLong(userId));
@@ -299,29 +301,78 @@ public class UserController {
 
 
 
+    /*
+     * Method: GET
+     * Endpoint: /user/{id}/avatar?v={avatarHash}&size={64|128|256}
+     * Response: the avatar image, or its smallest thumbnail of at least `size` px (PNG) when it exists
+     * ETag = content hash (+ thumbnail size), 304 for a matching If-None-Match
+     * With `v` equal to the current hash the response is cacheable for a year (the URL changes with the image)
+     * Content-Type comes from the image bytes, nosniff keeps browsers from reading it as anything else
+     */
+    @GetMapping("user/{id}/avatar")
+    public ResponseEntity<byte[]> getAvatar(@PathVariable("id") Long id,
+                                            @RequestParam(value = "v", required = false) String version,
+                                            @RequestParam(value = "size", defaultValue = "0") int size,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            Optional<AvatarService.AvatarImage> avatar = avatarService.findUserAvatar(id, size);
+            if (avatar.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+
+            AvatarService.AvatarImage image = avatar.get();
+            String etag = image.etag();
+            CacheControl cacheControl = image.hash().equals(version)
+                    ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+                    : CacheControl.noCache().cachePublic();
+
+            if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl)
+                        .header(NOSNIFF_HEADER, "nosniff").build();
+            }
+            return ResponseEntity.ok()
+                    .contentType(image.contentType())
+                    .header(NOSNIFF_HEADER, "nosniff")
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .body(image.data());
+        } catch (Exception e) {
+            ServerLogger.logServer(ServerLogger.Level.ERROR, "Error loading avatar of user " + id + ": " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /*
+     * Method: PUT
+     * Endpoint: /change_avatar?fileName={name}
+     * Body: raw image bytes, streamed into the avatar store (limit: AVATAR_MAX_BYTES, 413 above it)
+     */
     @Operation(summary = "Upload a file",
             description = "Uploads a file with content type application/octet-stream")
     @PutMapping(value = "/change_avatar", consumes = {"application/octet-stream", "image/png", "image/jpeg", "image/gif"})
     public ResponseEntity<String> changeAvatar(
-            @RequestHeader("Authorization") String authorizationHeader,
-            @RequestBody byte[] avatarData,
+            @AuthenticationPrincipal AuthenticatedUser user,
+            HttpServletRequest request,
             @RequestParam("fileName") String fileName) {
 
         try {
             String decodedFileName = URLDecoder.decode(fileName, StandardCharsets.UTF_8);
 
-            if (avatarData == null || avatarData.length == 0 || decodedFileName == null || decodedFileName.isBlank()) {
+            if (request.getContentLengthLong() == 0 || decodedFileName == null || decodedFileName.isBlank()) {
                 return ResponseEntity.badRequest().body("Invalid request. Avatar data and file name are required.");
             }
 
-            String token = authorizationHeader.replace("Bearer ", "");
-            if (token.isEmpty() || !jwtToken.validateAccessToken(token)) {
+            if (user == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized. Token is required.");
             }
 
-            String login = jwtToken.extractUsernameFromAccessToken(token);
+            if (request.getContentLengthLong() > AppConfig.getAvatarMaxBytes()) {
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("Avatar is too large.");
+            }
+
+            String login = user.login();
 
-            boolean avatarUpdated = userService.updateAvatarData(login, avatarData, decodedFileName);
+            boolean avatarUpdated = userService.updateAvatarData(login, request.getInputStream(), decodedFileName);
         //    System.out.println("Avatar DATAA: " + Arrays.toString(avatarData));
 
             if (avatarUpdated) {
@@ -329,6 +380,8 @@ public class UserController {
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found.");
             }
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).body(e.getReason());
         } catch (Exception e) {
         //    System.out.println("Error processing the avatar: " + e.getMessage());
          //   e.printStackTrace();
@@ -359,7 +412,12 @@ public class UserController {
             return ResponseEntity.badRequest().body("Invalid request. Email and new password are required.");
         }
 
-        boolean passwordChanged = userService.changePassword(request.getEmail(), request.getNewPassword());
+        boolean passwordChanged;
+        try {
+            passwordChanged = userService.changePassword(request.getEmail(), request.getNewPassword());
+        } catch (RejectedExecutionException e) {
+            return hashingBusy();
+        }
 
         if (passwordChanged) {
             return ResponseEntity.ok("Password changed successfully.");
@@ -382,4 +440,23 @@ public class UserController {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found.");
         }
     }
-}
\ No newline at end of file
+
+    // Password hashing pool is saturated, the client should retry shortly
+    private static <T> ResponseEntity<T> hashingBusy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+    }
+
+    /*
+     * null if the caller may act on the account `userId` (it is their own, or they are an admin),
+     * otherwise the response to send: 401 without a usable token (also tokens without the id claim), 403 for someone else's account
+     */
+    private static ResponseEntity<Boolean> checkOwnerOrAdmin(AuthenticatedUser user, String userId) {
+        if (user == null || user.id() == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!user.admin() && !String.valueOf(user.id()).equals(userId.trim())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(false);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,9 @@
+package org.main.unimapapi.dtos;
+
+/*
+ * Principal of a request authenticated by a JWT access token
+ *
+ * Published by JwtAuthenticationFilter, controllers receive it with @AuthenticationPrincipal
+ */
+public record AuthenticatedUser(Long id, String login, boolean admin) {
+}
@@ -0,0 +1,28 @@
+package org.main.unimapapi.dtos;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/*
+ * Selection of comments for the admin bulk deletion, all given conditions must match
+ * - kind: "subject" | "teacher", required with commentIds; without it both kinds are searched
+ * - commentIds: explicit comment ids
+ * - userId: author of the comments
+ * - entityId: subject code / teacher id the comments are about
+ * - from, to: creation time range [from, to)
+ */
+@Data
+public class BulkCommentDeleteRequest {
+    private String kind;
+    private List<Integer> commentIds;
+    private Long userId;
+    private String entityId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+
+    public boolean hasSelection() {
+        return (commentIds != null && !commentIds.isEmpty()) || userId != null || entityId != null || from != null || to != null;
+    }
+}
@@ -0,0 +1,18 @@
+package org.main.unimapapi.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// One page of the comments of a subject / teacher, nextCursor is null on the last page
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentPage_dto {
+    private List<Comment_dto> comments;
+    private String nextCursor;
+}
@@ -0,0 +1,18 @@
+package org.main.unimapapi.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// One page of subject search results, nextCursor is null on the last page
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubjectPage_dto {
+    private List<SubjectSummary_dto> subjects;
+    private String nextCursor;
+}
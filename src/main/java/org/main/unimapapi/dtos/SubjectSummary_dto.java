@@ -0,0 +1,25 @@
+package org.main.unimapapi.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Subject without the long text columns and grades, used in search results
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubjectSummary_dto {
+    private String code;
+    private String name;
+    private String type;
+    private int credits;
+    private String studyType;
+    private String semester;
+    private List<String> languages;
+    private String completionType;
+    private long studentCount;
+}
@@ -0,0 +1,39 @@
+package org.main.unimapapi.entities;
+
+import java.util.Locale;
+
+/*
+ * What a comment is about, with the table holding those comments
+ * `path` is the name used in URLs (/comments/subject/..., /comments/teacher/...)
+ */
+public enum CommentKind {
+    SUBJECT("subject", "comments_subjects", "subject_code"),
+    TEACHER("teacher", "comments_teachers", "teacher_id");
+
+    private final String path;
+    private final String table;
+    private final String entityColumn;
+
+    CommentKind(String path, String table, String entityColumn) {
+        this.path = path;
+        this.table = table;
+        this.entityColumn = entityColumn;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    public String table() {
+        return table;
+    }
+
+    public String entityColumn() {
+        return entityColumn;
+    }
+
+    // "subject" / "teacher" -> kind, IllegalArgumentException for anything else
+    public static CommentKind of(String path) {
+        return CommentKind.valueOf(path.trim().toUpperCase(Locale.ROOT));
+    }
+}
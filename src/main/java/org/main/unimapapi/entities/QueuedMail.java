@@ -0,0 +1,17 @@
+package org.main.unimapapi.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One message waiting in `mail_queue`
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueuedMail {
+    private Long id;
+    private String recipient;
+    private String subject;
+    private String body;
+    private int attempts;
+}
@@ -17,6 +17,7 @@ public class User {
     private String username;
     private boolean isAdmin;
     private boolean isPremium;
-    private byte[] avatar;
+    // SHA-256 of the image in `avatar_blobs`, null = default avatar (image: GET /user/{id}/avatar)
+    private String avatarHash;
     private String avatarFileName;
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package org.main.unimapapi.repository_queries;
+
+import lombok.RequiredArgsConstructor;
+import org.main.unimapapi.utils.ServerLogger;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+
+/*
+ * Repository for avatar images (`avatar_blobs`)
+ *
+ * Images are content-addressed: the key is the SHA-256 (hex) of the bytes,
+ * `user_data.avatar_hash` points to it (NULL = default avatar)
+ * Identical images are stored once, user lookups never read the image bytes
+ *
+ * Thumbnails of an image are kept in `avatar_variants` (hash, size), removed together with the image
+ *
+ * Used in: AvatarService, AvatarThumbnailService
+ */
+@Repository
+@RequiredArgsConstructor
+public class AvatarRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    // Avatar reference of a user, hash is null for the default avatar
+    public record UserAvatar(String hash, String fileName) {
+    }
+
+    /*
+     * Stores the image unless an image with the same hash already exists
+     * Either way the row is locked until the transaction ends (the no-op update of an existing image takes the lock),
+     * so call it in the transaction that points a user to the image: a concurrent deleteIfUnreferenced
+     * cannot remove the image in between
+     */
+    public void save(String hash, byte[] data) {
+        String sql = "INSERT INTO avatar_blobs (hash, data, size) VALUES (?, ?, ?) ON CONFLICT (hash) DO UPDATE SET hash = EXCLUDED.hash";
+        jdbcTemplate.update(sql, hash, data, data.length);
+    }
+
+    // Streams the image from `data` into the table, used for uploads; locks the row like save(String, byte[])
+    public void save(String hash, InputStream data, long size) {
+        String sql = "INSERT INTO avatar_blobs (hash, data, size) VALUES (?, ?, ?) ON CONFLICT (hash) DO UPDATE SET hash = EXCLUDED.hash";
+        jdbcTemplate.update(sql, ps -> {
+            ps.setString(1, hash);
+            ps.setBinaryStream(2, data, size);
+            ps.setInt(3, (int) size);
+        });
+    }
+
+    public Optional<UserAvatar> findUserAvatar(long userId) {
+        String sql = "SELECT avatar_hash, avatar_file_name FROM user_data WHERE id = ?";
+        List<UserAvatar> avatars = jdbcTemplate.query(sql,
+                (rs, rowNum) -> new UserAvatar(rs.getString("avatar_hash"), rs.getString("avatar_file_name")), userId);
+        return avatars.isEmpty() ? Optional.empty() : Optional.of(avatars.get(0));
+    }
+
+    public Optional<byte[]> findData(String hash) {
+        String sql = "SELECT data FROM avatar_blobs WHERE hash = ?";
+        List<byte[]> data = jdbcTemplate.query(sql, (rs, rowNum) -> rs.getBytes("data"), hash);
+        return data.isEmpty() ? Optional.empty() : Optional.of(data.get(0));
+    }
+
+    /*
+     * Points the user to another avatar
+     * Returns the previous hash as the only element (the element is null for the default avatar),
+     * or an empty list if there is no such user
+     */
+    public List<String> assignToUser(String login, String hash, String fileName) {
+        String sql = """
+                UPDATE user_data u SET avatar_hash = ?, avatar_file_name = ?
+                FROM (SELECT id, avatar_hash FROM user_data WHERE login = ? FOR UPDATE) old
+                WHERE u.id = old.id
+                RETURNING old.avatar_hash""";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> rs.getString("avatar_hash"), hash, fileName, login);
+    }
+
+    public boolean hasVariants(String hash) {
+        String sql = "SELECT EXISTS (SELECT 1 FROM avatar_variants WHERE hash = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, hash));
+    }
+
+    public void saveVariant(String hash, int size, byte[] data) {
+        String sql = "INSERT INTO avatar_variants (hash, size, data) VALUES (?, ?, ?) ON CONFLICT (hash, size) DO NOTHING";
+        jdbcTemplate.update(sql, hash, size, data);
+    }
+
+    public Optional<byte[]> findVariant(String hash, int size) {
+        String sql = "SELECT data FROM avatar_variants WHERE hash = ? AND size = ?";
+        List<byte[]> data = jdbcTemplate.query(sql, (rs, rowNum) -> rs.getBytes("data"), hash, size);
+        return data.isEmpty() ? Optional.empty() : Optional.of(data.get(0));
+    }
+
+    /*
+     * Removes an image that no user points to anymore (its variants go with it, ON DELETE CASCADE)
+     * A user pointed to the image by a transaction that committed while this delete waited for the row
+     * makes the foreign key reject the delete; the image is in use again then and stays
+     */
+    public void deleteIfUnreferenced(String hash) {
+        String sql = "DELETE FROM avatar_blobs WHERE hash = ? AND NOT EXISTS (SELECT 1 FROM user_data WHERE avatar_hash = ?)";
+        try {
+            jdbcTemplate.update(sql, hash, hash);
+        } catch (DataIntegrityViolationException e) {
+            ServerLogger.logServer(ServerLogger.Level.INFO, "Avatar " + hash + " was reused while being removed, kept");
+        }
+    }
+}
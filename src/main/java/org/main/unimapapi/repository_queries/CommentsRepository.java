@@ -1,77 +1,213 @@
 package org.main.unimapapi.repository_queries;
 
+import org.main.unimapapi.dtos.CommentPage_dto;
 import org.main.unimapapi.dtos.Comment_dto;
-import org.main.unimapapi.services.TokenService;
+import org.main.unimapapi.entities.CommentKind;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 
 @Repository
 @RequiredArgsConstructor
 public class CommentsRepository {
 
+    /*
+     * Order of a comment page, both are keyset-paginated (no OFFSET):
+     * - NEWEST: comment_id descending, cursor "{comment_id}"
+     * - RATING: rating descending, then comment_id descending, cursor "{rating}:{comment_id}"
+     *   (ratings are single digits 1-5, so the text column sorts like the numbers)
+     */
+    public enum Sort {
+        NEWEST, RATING;
+
+        public static Sort of(String value) {
+            return value == null || value.isBlank() ? NEWEST : Sort.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
     private final JdbcTemplate jdbcTemplate;
-    private final TokenService tokenService;
 
-    private final RowMapper<Comment_dto> commentsRowMapper = (rs, rowNum) -> {
+    // Columns of a comment of the kind, listed explicitly (no c.*), every one is read by the mappers below
+    private static String selectColumns(CommentKind kind) {
+        return "SELECT c.comment_id, c.user_id, u_d.name, c." + kind.entityColumn() + ", c.description, c.rating, c.levelaccess FROM "
+                + kind.table() + " c INNER JOIN user_data u_d ON c.user_id = u_d.id";
+    }
+
+    private static final RowMapper<Comment_dto> SUBJECT_COMMENT_MAPPER = (rs, rowNum) ->
+            mapComment(rs, rs.getString("subject_code"));
+
+    private static final RowMapper<Comment_dto> TEACHER_COMMENT_MAPPER = (rs, rowNum) ->
+            mapComment(rs, rs.getString("teacher_id"));
+
+    private static RowMapper<Comment_dto> mapperOf(CommentKind kind) {
+        return switch (kind) {
+            case SUBJECT -> SUBJECT_COMMENT_MAPPER;
+            case TEACHER -> TEACHER_COMMENT_MAPPER;
+        };
+    }
+
+    private static Comment_dto mapComment(ResultSet rs, String lookingId) throws SQLException {
         Comment_dto comment = new Comment_dto();
-        comment.setUser_id(rs.getInt("user_id"));
         comment.setComment_id(rs.getInt("comment_id"));
+        comment.setUser_id(rs.getInt("user_id"));
         comment.setName(rs.getString("name"));
+        comment.setLooking_id(lookingId);
         comment.setDescription(rs.getString("description"));
         comment.setRating(rs.getString("rating"));
         comment.setLevelAccess(rs.getInt("levelaccess"));
+        return comment;
+    }
+
+    /*
+     * One page of the comments of an entity, served by the (entity, comment_id) and (entity, rating, comment_id) indexes
+     * An invalid cursor throws IllegalArgumentException
+     */
+    public CommentPage_dto findPage(CommentKind kind, String entityId, Sort sort, String cursor, int limit) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = orderedAfter(kind, entityId, sort, cursor, params);
+        // One extra row tells whether there is a next page
+        sql.append(" LIMIT ?");
+        params.add(limit + 1);
 
-        if (hasColumn(rs, "subject_code")) {
-            comment.setLooking_id(rs.getString("subject_code"));
-        } else if (hasColumn(rs, "teacher_id")) {
-            comment.setLooking_id(rs.getString("teacher_id"));
+        List<Comment_dto> rows = jdbcTemplate.query(sql.toString(), mapperOf(kind), params.toArray());
+        if (rows.size() <= limit) {
+            return new CommentPage_dto(rows, null);
         }
+        List<Comment_dto> page = new ArrayList<>(rows.subList(0, limit));
+        return new CommentPage_dto(page, cursorAfter(sort, page.get(page.size() - 1)));
+    }
 
-        return comment;
-    };
+    // All comments of an entity after the cursor, without a limit (the unpaginated list)
+    public List<Comment_dto> findAllAfter(CommentKind kind, String entityId, Sort sort, String cursor) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = orderedAfter(kind, entityId, sort, cursor, params);
+        return jdbcTemplate.query(sql.toString(), mapperOf(kind), params.toArray());
+    }
+
+    // Query of the entity's comments following the cursor (none = from the start) in the sort order, fills `params`
+    private static StringBuilder orderedAfter(CommentKind kind, String entityId, Sort sort, String cursor, List<Object> params) {
+        StringBuilder sql = new StringBuilder(selectColumns(kind)).append(" WHERE c.").append(kind.entityColumn()).append(" = ?");
+        params.add(entityId);
 
-    public List<Comment_dto> getAllSubjectsComments(String subjectId) {
-        String sql = "SELECT u_d.name, c_s.* FROM comments_subjects c_s INNER JOIN user_data u_d ON c_s.user_id = u_d.id WHERE c_s.subject_code = ?";
-        return jdbcTemplate.query(sql, new Object[]{subjectId}, commentsRowMapper);
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                if (sort == Sort.RATING) {
+                    int separator = cursor.lastIndexOf(':');
+                    sql.append(" AND (c.rating, c.comment_id) < (?, ?)");
+                    params.add(cursor.substring(0, separator));
+                    params.add(Integer.parseInt(cursor.substring(separator + 1)));
+                } else {
+                    sql.append(" AND c.comment_id < ?");
+                    params.add(Integer.parseInt(cursor));
+                }
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid comment cursor: " + cursor);
+            }
+        }
+        sql.append(sort == Sort.RATING ? " ORDER BY c.rating DESC, c.comment_id DESC" : " ORDER BY c.comment_id DESC");
+        return sql;
+    }
+
+    // Cursor of the page that follows `last` in the given order
+    public static String cursorAfter(Sort sort, Comment_dto last) {
+        return sort == Sort.RATING ? last.getRating() + ":" + last.getComment_id() : String.valueOf(last.getComment_id());
+    }
+
+    public void addComment(CommentKind kind, long userId, String entityId, String description, int rating, int levelAccess) {
+        String sql = "INSERT INTO " + kind.table() + " (user_id, " + kind.entityColumn() + ", description, rating, levelaccess) VALUES (?, ?, ?, ?, ?)";
+        jdbcTemplate.update(sql, userId, entityId, description, rating, levelAccess);
+    }
+
+    // Entity and rating of a deleted comment, used to update the rating aggregates
+    public record RatedComment(String entityId, String rating) {
+    }
+
+    // Number of comments with one rating value of one entity
+    public record RatingCount(String entityId, String rating, long count) {
     }
 
-    public List<Comment_dto> getAllTeachersComments(String teacherId) {
-        String sql = "SELECT u_d.name, c_t.* FROM comments_teachers c_t INNER JOIN user_data u_d ON c_t.user_id = u_d.id WHERE c_t.teacher_id = ?";
-        return jdbcTemplate.query(sql, new Object[]{teacherId}, commentsRowMapper);
+    private static final RowMapper<RatedComment> RATED_COMMENT_MAPPER = (rs, rowNum) ->
+            new RatedComment(rs.getString(1), rs.getString(2));
+
+    // Deletes the comment, returns what it was about (empty if it did not exist)
+    public Optional<RatedComment> deleteComment(CommentKind kind, int commentId) {
+        String sql = "DELETE FROM " + kind.table() + " WHERE comment_id = ? RETURNING " + kind.entityColumn() + ", rating";
+        return jdbcTemplate.query(sql, RATED_COMMENT_MAPPER, commentId).stream().findFirst();
     }
 
-    public void addNewSubjectComment(int userId, String subjectCode, String description, int rating, int levelAccess) {
-        String sql = "INSERT INTO comments_subjects (user_id, subject_code, description, rating, levelaccess) VALUES (?, ?, ?, ?, ?)";
-        jdbcTemplate.update(sql, userId, subjectCode, description, rating, levelAccess);
+    // Deletes the comment only if `userId` wrote it, empty if there is no such comment of the user
+    public Optional<RatedComment> deleteUserComment(CommentKind kind, int commentId, long userId) {
+        String sql = "DELETE FROM " + kind.table() + " WHERE comment_id = ? AND user_id = ? RETURNING " + kind.entityColumn() + ", rating";
+        return jdbcTemplate.query(sql, RATED_COMMENT_MAPPER, commentId, userId).stream().findFirst();
     }
 
-    public void addNewTeacherComment(int userId, String teacherId, String description, int rating, int levelAccess) {
-        String sql = "INSERT INTO comments_teachers (user_id, teacher_id, description, rating, levelaccess) VALUES (?, ?, ?, ?, ?)";
-        jdbcTemplate.update(sql, userId, teacherId, description, rating, levelAccess);
+    public List<RatedComment> deleteUserComments(CommentKind kind, long userId) {
+        String sql = "DELETE FROM " + kind.table() + " WHERE user_id = ? RETURNING " + kind.entityColumn() + ", rating";
+        return jdbcTemplate.query(sql, RATED_COMMENT_MAPPER, userId);
     }
 
-    public void deleteSubjectComment(int commentId) {
-        String sql = "DELETE FROM comments_subjects WHERE comment_id = ?";
-        jdbcTemplate.update(sql, commentId);
+    // Ratings of all entities of the kind, grouped (rebuilds the rating aggregates)
+    public List<RatingCount> countRatings(CommentKind kind) {
+        String sql = "SELECT " + kind.entityColumn() + ", rating, count(*) FROM " + kind.table() + " GROUP BY " + kind.entityColumn() + ", rating";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new RatingCount(rs.getString(1), rs.getString(2), rs.getLong(3)));
     }
 
-    public void deleteTeacherComment(int commentId) {
-        String sql = "DELETE FROM comments_teachers WHERE comment_id = ?";
-        jdbcTemplate.update(sql, commentId);
+    // Comment chosen for bulk deletion
+    public record TargetComment(int commentId, String entityId, String rating) {
     }
 
-    private boolean hasColumn(ResultSet rs, String columnName) {
-        try {
-            rs.findColumn(columnName);
-            return true;
-        } catch (SQLException e) {
-            return false;
+    // Ids of the comments of the kind matching every given condition (null = no condition), not locked
+    public List<Integer> selectIdsForDeletion(CommentKind kind, List<Integer> commentIds, Long userId, String entityId,
+                                              LocalDateTime from, LocalDateTime to) {
+        StringBuilder sql = new StringBuilder("SELECT comment_id FROM ").append(kind.table()).append(" WHERE TRUE");
+        List<Object> params = new ArrayList<>();
+        if (commentIds != null && !commentIds.isEmpty()) {
+            sql.append(" AND comment_id = ANY(?)");
+            params.add(commentIds.toArray(new Integer[0]));
+        }
+        if (userId != null) {
+            sql.append(" AND user_id = ?");
+            params.add(userId);
+        }
+        if (entityId != null) {
+            sql.append(" AND ").append(kind.entityColumn()).append(" = ?");
+            params.add(entityId);
+        }
+        if (from != null) {
+            sql.append(" AND created_at >= ?");
+            params.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND created_at < ?");
+            params.add(Timestamp.valueOf(to));
         }
+        sql.append(" ORDER BY comment_id");
+        return jdbcTemplate.queryForList(sql.toString(), Integer.class, params.toArray());
+    }
+
+    // Those of the comments that still exist, locked until the end of the transaction
+    public List<TargetComment> lockForDeletion(CommentKind kind, List<Integer> commentIds) {
+        String sql = "SELECT comment_id, " + kind.entityColumn() + ", rating FROM " + kind.table()
+                + " WHERE comment_id = ANY(?) ORDER BY comment_id FOR UPDATE";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new TargetComment(rs.getInt(1), rs.getString(2), rs.getString(3)),
+                (Object) commentIds.toArray(new Integer[0]));
+    }
+
+    // Deletes the comments in one JDBC batch, returns the number of deleted rows
+    public int deleteBatch(CommentKind kind, List<Integer> commentIds) {
+        String sql = "DELETE FROM " + kind.table() + " WHERE comment_id = ?";
+        int[] counts = jdbcTemplate.batchUpdate(sql, commentIds, commentIds.size(), (ps, commentId) -> ps.setInt(1, commentId))[0];
+        return Arrays.stream(counts).map(count -> Math.max(count, 0)).sum();
     }
-}
\ No newline at end of file
+}
@@ -2,10 +2,8 @@ package org.main.unimapapi.repository_queries;
 
 import org.main.unimapapi.entities.ConfirmationCode;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
 import lombok.RequiredArgsConstructor;
 
 /*
@@ -19,21 +17,14 @@ import lombok.RequiredArgsConstructor;
 public class ConfirmationCodeRepository {
     private final JdbcTemplate jdbcTemplate;
 
-    // RowMapper to convert the result of the SQL query into a ConfirmationCode object
-    private final RowMapper<ConfirmationCode> confirmationCodeRowMapper = (rs, rowNum) -> {
-        ConfirmationCode code = new ConfirmationCode();
-        code.setUserId(rs.getLong("id_code"));
-        code.setCode(rs.getString("code"));
-        code.setExpirationTime(rs.getTimestamp("exp_time").toLocalDateTime());
-        return code;
-    };
-
-    // Checks for a confirmation code by userId and the code itself
-    public boolean find(Long userId, String code) {
-        String sql = "SELECT * FROM confirm_codes WHERE id_code = ? and code = ?";
-        List<ConfirmationCode> results = jdbcTemplate.query(sql, confirmationCodeRowMapper, userId, code);
-        System.out.println(results);
-        return !results.isEmpty();
+    /*
+     * Verifies and consumes the code in one statement
+     * Returns true only if the code exists and has not expired; the row is deleted in the same round trip,
+     * so a code can be used once even with concurrent requests
+     */
+    public boolean consume(Long userId, String code) {
+        String sql = "DELETE FROM confirm_codes WHERE id_code = ? AND code = ? AND exp_time > now() RETURNING id";
+        return !jdbcTemplate.queryForList(sql, Long.class, userId, code).isEmpty();
     }
 
     // Saves the new confirmation code to the database
@@ -49,9 +40,17 @@ public class ConfirmationCodeRepository {
         jdbcTemplate.update(sql, confirmationCode.getUserId(), confirmationCode.getCode(), confirmationCode.getExpirationTime());
     }
 
-    // Removes the confirmation code by userId and code
-    public void deleteByUserId(Long userId, String code) {
-        String sql = "DELETE FROM confirm_codes WHERE code = ? and id_code = ?";
-        jdbcTemplate.update(sql, code, userId);
+    // Removes all codes of the user (a new code replaces the old ones)
+    public void deleteByUserId(Long userId) {
+        String sql = "DELETE FROM confirm_codes WHERE id_code = ?";
+        jdbcTemplate.update(sql, userId);
     }
-}
\ No newline at end of file
+
+    // Removes up to `limit` expired codes, returns how many were removed
+    public int deleteExpired(int limit) {
+        String sql = """
+                DELETE FROM confirm_codes WHERE id IN (
+                    SELECT id FROM confirm_codes WHERE exp_time <= now() LIMIT ?)""";
+        return jdbcTemplate.update(sql, limit);
+    }
+}
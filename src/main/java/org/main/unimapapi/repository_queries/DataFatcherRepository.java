@@ -1,14 +1,16 @@
 package org.main.unimapapi.repository_queries;
 
+import org.main.unimapapi.dtos.SubjectSummary_dto;
 import org.main.unimapapi.dtos.Subject_dto;
 import org.main.unimapapi.dtos.TeacherSubjectRoles;
 import org.main.unimapapi.dtos.Teacher_dto;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
 
@@ -16,8 +18,8 @@ import lombok.RequiredArgsConstructor;
  * Repository to sample data by subject and teacher
  *
  * Used in:
- * - SubjectController -> /resources/subjects
- * - TeacherController -> /resources/teachers
+ * - CatalogCacheService -> /resources/subjects, /resources/teachers
+ * - SubjectController -> /resources/subjects/search, /resources/subjects/{code}
  */
 @Repository
 @RequiredArgsConstructor
@@ -54,85 +56,154 @@ public class DataFatcherRepository {
         return subject;
     };
 
+    // Subject columns with the A-Fx grade percentages pivoted from `subject_evaluation`
+    private static final String SUBJECT_WITH_GRADES_SQL = """
+            SELECT\s
+                sub.*,
+                MAX(CASE WHEN sub_eval.grade = 'A' THEN sub_eval.percent  END) AS A,
+                MAX(CASE WHEN sub_eval.grade = 'B' THEN sub_eval.percent END) AS B,
+                MAX(CASE WHEN sub_eval.grade = 'C' THEN sub_eval.percent END) AS C,
+                MAX(CASE WHEN sub_eval.grade = 'D' THEN sub_eval.percent  END) AS D,
+                MAX(CASE WHEN sub_eval.grade = 'E' THEN sub_eval.percent  END) AS E,
+                MAX(CASE WHEN sub_eval.grade = 'Fx' THEN sub_eval.percent  END) AS FX
+            FROM\s
+                subjects sub
+            LEFT JOIN\s
+                subject_evaluation sub_eval ON sub.code = sub_eval.subject_code
+            """;
+
     /*
      * Receive all items
      *
-     * Method: used in SubjectController
+     * Method: used in CatalogCacheService
      * SQL: select from `subjects` + LEFT JOIN with `subject_evaluation`
      * Grouping: by subject.code
      */
     public List<Subject_dto> fetchAllSubjects() {
-        String sql = """
-                SELECT\s
-                    sub.*,
-                    MAX(CASE WHEN sub_eval.grade = 'A' THEN sub_eval.percent  END) AS A,
-                    MAX(CASE WHEN sub_eval.grade = 'B' THEN sub_eval.percent END) AS B,
-                    MAX(CASE WHEN sub_eval.grade = 'C' THEN sub_eval.percent END) AS C,
-                    MAX(CASE WHEN sub_eval.grade = 'D' THEN sub_eval.percent  END) AS D,
-                    MAX(CASE WHEN sub_eval.grade = 'E' THEN sub_eval.percent  END) AS E,
-                    MAX(CASE WHEN sub_eval.grade = 'Fx' THEN sub_eval.percent  END) AS FX
-                FROM\s
-                    subjects sub
-                LEFT JOIN\s
-                    subject_evaluation sub_eval ON sub.code = sub_eval.subject_code
-                GROUP BY\s
-                    sub.code""";
-        return jdbcTemplate.query(sql, subjectsRowMapper);
+        return jdbcTemplate.query(SUBJECT_WITH_GRADES_SQL + "GROUP BY sub.code", subjectsRowMapper);
     }
 
-    // RowMapper for the teacher + the subjects where he/she teaches (teacher_subject_roles)
-    private final RowMapper<Teacher_dto> teachersRowMapper = (rs, rowNum) -> {
-        Teacher_dto teacher = new Teacher_dto();
-        teacher.setId(rs.getString("id"));
-        teacher.setName(rs.getString("name"));
-        teacher.setEmail(rs.getString("email"));
-        teacher.setPhone(rs.getString("phone"));
-        teacher.setOffice(rs.getString("office"));
-
-        String subjectCode = rs.getString("subject_code");
-        String roles = rs.getString("roles");
-
-        if (subjectCode != null && roles != null) {
-            TeacherSubjectRoles tsr = new TeacherSubjectRoles();
-            tsr.setSubjectName(subjectCode);
-            tsr.setRoles(Arrays.asList(roles.split(",")));
-            teacher.setSubjects(Collections.singletonList(tsr));
-        } else {
-            teacher.setSubjects(Collections.emptyList());
-        }
+    /*
+     * One subject with all text columns and grades
+     *
+     * Method: used in SubjectController -> /resources/subjects/{code}
+     * Returns null if there is no such subject
+     */
+    public Subject_dto fetchSubjectByCode(String code) {
+        List<Subject_dto> subjects = jdbcTemplate.query(
+                SUBJECT_WITH_GRADES_SQL + "WHERE sub.code = ? GROUP BY sub.code", subjectsRowMapper, code);
+        return subjects.isEmpty() ? null : subjects.get(0);
+    }
 
-        return teacher;
+    // RowMapper for the light subject projection (no long text columns, no grades)
+    private final RowMapper<SubjectSummary_dto> subjectSummaryRowMapper = (rs, rowNum) -> {
+        SubjectSummary_dto subject = new SubjectSummary_dto();
+        subject.setCode(rs.getString("code"));
+        subject.setName(rs.getString("name"));
+        subject.setType(rs.getString("type"));
+        subject.setCredits(rs.getInt("credits"));
+        subject.setStudyType(rs.getString("study_type"));
+        subject.setSemester(rs.getString("semester"));
+        subject.setLanguages(Arrays.asList(rs.getString("languages").split(",")));
+        subject.setCompletionType(rs.getString("completion_type"));
+        subject.setStudentCount(rs.getInt("student_count"));
+        return subject;
     };
 
     /*
-     * Receiving all teachers
+     * Subject search with keyset pagination
      *
-     * Method: used in TeacherController
-     * SQL: LEFT JOIN `teachers` + `teacher_subject_roles`
-     * Sorting: by tea.id
+     * Method: used in SubjectController -> /resources/subjects/search
+     * Every filter is optional (null = not applied)
+     * Paging: ORDER BY code, the next page starts after `afterCode`, so no OFFSET scan is needed
+     * Returns up to `limit` rows; the caller asks for one more row to know whether another page exists
+     * Indexes: see db/migration/V1__baseline.sql (idx_subjects_*)
      */
-    private List<TeacherSubjectRoles> fetchSubjectsByTeacherId(String teacherId) {
-        String sql = "SELECT * FROM teacher_subject_roles WHERE teacher_id = ?";
+    public List<SubjectSummary_dto> searchSubjects(String semester, String studyType, String type, Integer credits,
+                                                   String language, String afterCode, int limit) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT code, name, type, credits, study_type, semester, languages, completion_type, student_count
+                FROM subjects
+                WHERE TRUE""");
+        List<Object> params = new ArrayList<>();
 
-        if (teacherId == null || !teacherId.matches("\\d+")) {
-            throw new IllegalArgumentException("teacherId cannot be null or empty");
+        if (semester != null) {
+            sql.append(" AND semester = ?");
+            params.add(semester);
         }
+        if (studyType != null) {
+            sql.append(" AND study_type = ?");
+            params.add(studyType);
+        }
+        if (type != null) {
+            sql.append(" AND type = ?");
+            params.add(type);
+        }
+        if (credits != null) {
+            sql.append(" AND credits = ?");
+            params.add(credits);
+        }
+        if (language != null) {
+            // Same expression as the GIN index idx_subjects_languages
+            sql.append(" AND string_to_array(languages, ',') @> ARRAY[?]::text[]");
+            params.add(language);
+        }
+        if (afterCode != null) {
+            sql.append(" AND code > ?");
+            params.add(afterCode);
+        }
+        sql.append(" ORDER BY code LIMIT ?");
+        params.add(limit);
 
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
-            TeacherSubjectRoles teacherSubjectRoles = new TeacherSubjectRoles();
-            teacherSubjectRoles.setSubjectName(rs.getString("subject_code"));
-            teacherSubjectRoles.setRoles(Arrays.asList(rs.getString("roles").split(",")));
-            return teacherSubjectRoles;
-        }, teacherId);
+        return jdbcTemplate.query(sql.toString(), subjectSummaryRowMapper, params.toArray());
     }
 
+    /*
+     * ResultSetExtractor for the teacher + the subjects where he/she teaches (teacher_subject_roles)
+     *
+     * The join is ordered by tea.id, so all rows of one teacher are adjacent:
+     * the rows are read once and every teacher gets a single Teacher_dto with all of its subjects
+     */
+    private final ResultSetExtractor<List<Teacher_dto>> teachersExtractor = rs -> {
+        List<Teacher_dto> teachers = new ArrayList<>();
+        Teacher_dto current = null;
+
+        while (rs.next()) {
+            String id = rs.getString("id");
+            if (current == null || !current.getId().equals(id)) {
+                current = new Teacher_dto();
+                current.setId(id);
+                current.setName(rs.getString("name"));
+                current.setEmail(rs.getString("email"));
+                current.setPhone(rs.getString("phone"));
+                current.setOffice(rs.getString("office"));
+                current.setSubjects(new ArrayList<>());
+                teachers.add(current);
+            }
+
+            String subjectCode = rs.getString("subject_code");
+            String roles = rs.getString("roles");
+            if (subjectCode != null && roles != null) {
+                current.getSubjects().add(new TeacherSubjectRoles(subjectCode, Arrays.asList(roles.split(","))));
+            }
+        }
+        return teachers;
+    };
+
+    /*
+     * Receiving all teachers
+     *
+     * Method: used in TeacherController
+     * SQL: LEFT JOIN `teachers` + `teacher_subject_roles`
+     * Sorting: by tea.id (required by teachersExtractor), then by subject code
+     */
     public List<Teacher_dto> fetchAllTeachers() {
         String sql = """
                 SELECT tea.id, tea.name, tea.email, tea.phone, tea.office,
                        tea_sub.subject_code, tea_sub.roles
                 FROM teachers tea
                 LEFT JOIN teacher_subject_roles tea_sub ON tea.id = tea_sub.teacher_id
-                ORDER BY tea.id;""";
-        return jdbcTemplate.query(sql, teachersRowMapper);
+                ORDER BY tea.id, tea_sub.subject_code;""";
+        return jdbcTemplate.query(sql, teachersExtractor);
     }
 }
\ No newline at end of file
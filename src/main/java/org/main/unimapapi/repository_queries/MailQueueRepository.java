@@ -0,0 +1,81 @@
+package org.main.unimapapi.repository_queries;
+
+import lombok.RequiredArgsConstructor;
+import org.main.unimapapi.entities.QueuedMail;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/*
+ * Repository for outgoing emails (`mail_queue`)
+ *
+ * A row stays in the table until the message is delivered (row deleted)
+ * or gives up after the last attempt (status FAILED)
+ *
+ * Several server instances can deliver from the same table: a dispatcher claims due rows
+ * with FOR UPDATE SKIP LOCKED and sets a lease (`locked_until`), other dispatchers skip leased rows
+ * If an instance dies while sending, its lease expires and the rows are claimed again
+ *
+ * Used in: EmailSender (enqueue), MailDispatcher (delivery)
+ */
+@Repository
+@RequiredArgsConstructor
+public class MailQueueRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    private final RowMapper<QueuedMail> queuedMailRowMapper = (rs, rowNum) -> new QueuedMail(
+            rs.getLong("id"),
+            rs.getString("recipient"),
+            rs.getString("subject"),
+            rs.getString("body"),
+            rs.getInt("attempts"));
+
+    public void enqueue(String recipient, String subject, String body) {
+        String sql = "INSERT INTO mail_queue (recipient, subject, body) VALUES (?, ?, ?)";
+        jdbcTemplate.update(sql, recipient, subject, body);
+    }
+
+    // Claims up to `limit` due, unleased messages for `leaseMillis`, oldest first
+    public List<QueuedMail> claimDue(int limit, long leaseMillis) {
+        String sql = """
+                UPDATE mail_queue SET locked_until = now() + ? * INTERVAL '1 millisecond'
+                WHERE id IN (
+                    SELECT id FROM mail_queue
+                    WHERE status = 'PENDING' AND next_attempt_at <= now()
+                      AND (locked_until IS NULL OR locked_until < now())
+                    ORDER BY next_attempt_at
+                    LIMIT ?
+                    FOR UPDATE SKIP LOCKED)
+                RETURNING id, recipient, subject, body, attempts""";
+        return jdbcTemplate.query(sql, queuedMailRowMapper, leaseMillis, limit);
+    }
+
+    // Gives claimed messages back without counting an attempt
+    public void releaseClaims(List<Long> ids) {
+        String sql = "UPDATE mail_queue SET locked_until = NULL WHERE id = ?";
+        jdbcTemplate.batchUpdate(sql, ids, ids.size(), (ps, id) -> ps.setLong(1, id));
+    }
+
+    public void deleteDelivered(List<Long> ids) {
+        String sql = "DELETE FROM mail_queue WHERE id = ?";
+        jdbcTemplate.batchUpdate(sql, ids, ids.size(), (ps, id) -> ps.setLong(1, id));
+    }
+
+    public void reschedule(long id, int attempts, Timestamp nextAttemptAt, String error) {
+        String sql = "UPDATE mail_queue SET attempts = ?, next_attempt_at = ?, last_error = ?, locked_until = NULL WHERE id = ?";
+        jdbcTemplate.update(sql, attempts, nextAttemptAt, error, id);
+    }
+
+    public void markFailed(long id, int attempts, String error) {
+        String sql = "UPDATE mail_queue SET status = 'FAILED', attempts = ?, last_error = ?, locked_until = NULL WHERE id = ?";
+        jdbcTemplate.update(sql, attempts, error, id);
+    }
+
+    public long countPending() {
+        Long count = jdbcTemplate.queryForObject("SELECT count(*) FROM mail_queue WHERE status = 'PENDING'", Long.class);
+        return count != null ? count : 0;
+    }
+}
@@ -21,6 +21,9 @@ import lombok.RequiredArgsConstructor;
 public class UserRepository {
     private final JdbcTemplate jdbcTemplate;
 
+    // Slim projection: everything except image data, which lives in `avatar_blobs` (see AvatarRepository)
+    private static final String USER_COLUMNS = "id, login, email, password, name, is_admin, is_premium, avatar_hash, avatar_file_name";
+
     // Converts the SQL query result string into a User object
     private final RowMapper<User> userRowMapper = (rs, rowNum) -> {
         User user = new User();
@@ -31,13 +34,13 @@ public class UserRepository {
         user.setUsername(rs.getString("name"));
         user.setAdmin(rs.getBoolean("is_admin"));
         user.setPremium(rs.getBoolean("is_premium"));
-        user.setAvatar(rs.getBytes("avatar"));
+        user.setAvatarHash(rs.getString("avatar_hash"));
         user.setAvatarFileName(rs.getString("avatar_file_name"));
         return user;
     };
 
     public Optional<User> findById(Long id) {
-        String sql = "SELECT * FROM user_data WHERE id = ?";
+        String sql = "SELECT " + USER_COLUMNS + " FROM user_data WHERE id = ?";
         List<User> users = jdbcTemplate.query(sql, userRowMapper, id);
         return users.isEmpty() ? Optional.empty() : Optional.of(users.get(0));
     }
@@ -47,7 +50,7 @@ public class UserRepository {
             throw new IllegalArgumentException("EMAIL CAN NOT BE NULL");
         }
 
-        String sql = "SELECT * FROM user_data WHERE email = ?";
+        String sql = "SELECT " + USER_COLUMNS + " FROM user_data WHERE email = ?";
         try {
             List<User> users = jdbcTemplate.query(sql, userRowMapper, email);
             return users.isEmpty() ? Optional.empty() : Optional.of(users.get(0));
@@ -62,7 +65,7 @@ public class UserRepository {
             throw new IllegalArgumentException("LOGIN CAN NOT BE NULL");
         }
 
-        String sql = "SELECT * FROM user_data WHERE login = ?";
+        String sql = "SELECT " + USER_COLUMNS + " FROM user_data WHERE login = ?";
         try {
             List<User> users = jdbcTemplate.query(sql, userRowMapper, login);
             return users.isEmpty() ? Optional.empty() : Optional.of(users.get(0));
@@ -77,32 +80,59 @@ public class UserRepository {
             throw new IllegalArgumentException("USERNAME CAN NOT BE NULL");
         }
 
-        String sql = "SELECT * FROM user_data WHERE name = ?";
+        String sql = "SELECT " + USER_COLUMNS + " FROM user_data WHERE name = ?";
         List<User> users = jdbcTemplate.query(sql, userRowMapper, username);
         return users.isEmpty() ? Optional.empty() : Optional.of(users.get(0));
     }
 
     public List<User> findAll() {
-        String sql = "SELECT * FROM user_data";
+        String sql = "SELECT " + USER_COLUMNS + " FROM user_data";
         return jdbcTemplate.query(sql, userRowMapper);
     }
 
+    /*
+     * Inserts the user in one round trip, uniqueness of login / email is enforced by the table itself
+     * Returns false (and inserts nothing) if the login or email is already taken; on success the id is set on `user`
+     */
     public boolean save(User user) {
-        Optional<User> existingUser = findByLogin(user.getLogin());
-        if (existingUser.isPresent()) {
+        String sql = """
+                INSERT INTO user_data (login, email, password, name, is_admin, is_premium, avatar_hash, avatar_file_name)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                ON CONFLICT DO NOTHING
+                RETURNING id""";
+        List<Long> ids = jdbcTemplate.queryForList(sql, Long.class, user.getLogin(), user.getEmail(), user.getPassword(),
+                user.getUsername(), user.isAdmin(), user.isPremium(), user.getAvatarHash(), user.getAvatarFileName());
+        if (ids.isEmpty()) {
             return false;
         }
-        String sql = "INSERT INTO user_data (login, email, password, name, is_admin, is_premium, avatar, avatar_file_name) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-        jdbcTemplate.update(sql, user.getLogin(), user.getEmail(), user.getPassword(), user.getUsername(), user.isAdmin(), user.isPremium(), user.getAvatar(), user.getAvatarFileName());
+        user.setId(ids.get(0));
         return true;
     }
 
+    // Which of the unique fields ("login", "email") are already used, asked after a failed save
+    public List<String> findTakenFields(String login, String email) {
+        String sql = """
+                SELECT field FROM (
+                    SELECT 'login' AS field, 1 AS ord WHERE EXISTS (SELECT 1 FROM user_data WHERE login = ?)
+                    UNION ALL
+                    SELECT 'email', 2 WHERE EXISTS (SELECT 1 FROM user_data WHERE email = ?)
+                ) taken ORDER BY ord""";
+        return jdbcTemplate.queryForList(sql, String.class, login, email);
+    }
+
+    // Avatar columns are not written here, they are changed only through AvatarService
     public void update(User user) {
         if (user.getPassword() == null || user.getPassword().isEmpty()) {
             throw new IllegalArgumentException("Password cannot be null or empty");
         }
-        String sql = "UPDATE user_data SET login = ?, email = ?, password = ?, name = ?, is_admin = ?, is_premium = ?, avatar = ?, avatar_file_name = ? WHERE id = ?";
-        jdbcTemplate.update(sql, user.getLogin(), user.getEmail(), user.getPassword(), user.getUsername(), user.isAdmin(), user.isPremium(), user.getAvatar(), user.getAvatarFileName(), user.getId());
+        String sql = "UPDATE user_data SET login = ?, email = ?, password = ?, name = ?, is_admin = ?, is_premium = ? WHERE id = ?";
+        jdbcTemplate.update(sql, user.getLogin(), user.getEmail(), user.getPassword(), user.getUsername(), user.isAdmin(), user.isPremium(), user.getId());
+    }
+
+    // Replaces the password hash only if it was not changed in the meantime (re-hash after login)
+    public boolean replacePasswordHash(Long id, String oldHash, String newHash) {
+        String sql = "UPDATE user_data SET password = ? WHERE id = ? AND password = ?";
+        return jdbcTemplate.update(sql, newHash, id, oldHash) == 1;
     }
 
     // Deleting a user by ID
@@ -112,29 +142,19 @@ public class UserRepository {
     }
 
     /*
-     * Deletes EVERYTHING related to the user:
-     * - comments on subjects and teachers
+     * Deletes the rest of the user's data, call it in the transaction in which UserService removes
+     * the comments through CommentService:
      * - confirmation codes
      * - the account itself
+     * Returns the avatar hash the user pointed to (null for the default avatar or no such user),
+     * the caller releases the image once the deletion is committed
      */
-    public void deleteAllUserInfo(Long id) {
-        String deleteCommentsSubjectsSql = "DELETE FROM comments_subjects WHERE user_id = ?";
-        String deleteCommentsTeachersSql = "DELETE FROM comments_teachers WHERE user_id = ?";
-        String deleteUserSql = "DELETE FROM user_data WHERE id = ?";
+    public String deleteAllUserInfo(Long id) {
+        String deleteUserSql = "DELETE FROM user_data WHERE id = ? RETURNING avatar_hash";
         String deleteConfCodesSql = "DELETE FROM confirm_codes WHERE id_code = ?";
 
-        jdbcTemplate.update(deleteCommentsSubjectsSql, id);
-        jdbcTemplate.update(deleteCommentsTeachersSql, id);
         jdbcTemplate.update(deleteConfCodesSql, id);
-        jdbcTemplate.update(deleteUserSql, id);
-    }
-
-    // Deletes only the user's comments
-    public void deleteAllUserComments(Long id) {
-        String deleteCommentsSubjectsSql = "DELETE FROM comments_subjects WHERE user_id = ?";
-        String deleteCommentsTeachersSql = "DELETE FROM comments_teachers WHERE user_id = ?";
-
-        jdbcTemplate.update(deleteCommentsSubjectsSql, id);
-        jdbcTemplate.update(deleteCommentsTeachersSql, id);
+        List<String> avatarHashes = jdbcTemplate.query(deleteUserSql, (rs, rowNum) -> rs.getString("avatar_hash"), id);
+        return avatarHashes.isEmpty() ? null : avatarHashes.get(0);
     }
 }
\ No newline at end of file
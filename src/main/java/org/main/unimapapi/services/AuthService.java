@@ -3,17 +3,22 @@ package org.main.unimapapi.services;
 import lombok.AllArgsConstructor;
 import org.main.unimapapi.entities.User;
 import org.main.unimapapi.repository_queries.UserRepository;
-import org.main.unimapapi.utils.Hashing;
 import org.main.unimapapi.utils.ServerLogger;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 @AllArgsConstructor
 public class AuthService {
     private final UserRepository userRepository;
+    private final PasswordHasher passwordHasher;
 
+    /*
+     * Returns the user if the password matches, otherwise null
+     * Throws RejectedExecutionException when password hashing is overloaded
+     */
     public User authenticate(String login, String password) {
         try {
             Optional<User> userOptional = userRepository.findByLogin(login);
@@ -21,12 +26,19 @@ public class AuthService {
                 userOptional = userRepository.findByEmail(login);
             }
 
-            if (userOptional.isPresent() && Hashing.checkPassword(password, userOptional.get().getPassword())) {
-                return userOptional.get();
+            if (userOptional.isPresent() && passwordHasher.verify(password, userOptional.get().getPassword())) {
+                User user = userOptional.get();
+                String storedHash = user.getPassword();
+                if (passwordHasher.needsRehash(storedHash)) {
+                    passwordHasher.rehashLater(password, newHash -> userRepository.replacePasswordHash(user.getId(), storedHash, newHash));
+                }
+                return user;
             }
 
             ServerLogger.logServer(ServerLogger.Level.WARNING, "User not found!");
             return null;
+        } catch (RejectedExecutionException e) {
+            throw e;
         } catch (Exception e) {
          //   System.err.println("Error during authentication: " + e.getMessage());
             ServerLogger.logServer(ServerLogger.Level.ERROR, "Error during authentication: " + e.getMessage());
@@ -0,0 +1,297 @@
+package org.main.unimapapi.services;
+
+import org.main.unimapapi.configs.AppConfig;
+import org.main.unimapapi.repository_queries.AvatarRepository;
+import org.main.unimapapi.utils.ServerLogger;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/*
+ * Avatar storage
+ *
+ * - images live in `avatar_blobs`, keyed by their SHA-256, users only keep the hash
+ * - a user without an avatar (hash NULL) gets the default image bundled with the application
+ * - an image that is no longer used by anybody is removed when the user changes the avatar or is deleted;
+ *   storing an image and pointing a user to it is one transaction holding the image row, so the removal cannot race with it
+ * - uploads are streamed to a temporary file while being hashed, never held as one byte[]
+ * - only PNG, JPEG and GIF are accepted, recognised by their magic bytes; the Content-Type served
+ *   is derived from the stored bytes as well, never from the client's file name
+ * - thumbnails (AvatarThumbnailService.SIZES) are generated in the background and served for ?size=
+ */
+@Service
+public class AvatarService {
+    private static final String DEFAULT_AVATAR_RESOURCE = "/org.main.unimapapi/1.png";
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final byte[] JPEG_MAGIC = {(byte) 0xff, (byte) 0xd8, (byte) 0xff};
+    private static final byte[] GIF87_MAGIC = {'G', 'I', 'F', '8', '7', 'a'};
+    private static final byte[] GIF89_MAGIC = {'G', 'I', 'F', '8', '9', 'a'};
+    private static final int MAGIC_BYTES = PNG_MAGIC.length;
+
+    private final AvatarRepository avatarRepository;
+    private final AvatarThumbnailService thumbnailService;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxAvatarBytes = AppConfig.getAvatarMaxBytes();
+    private final byte[] defaultAvatar;
+    private final String defaultAvatarHash;
+    private final Map<Integer, byte[]> defaultThumbnails;
+
+    /*
+     * Image served for a user
+     * hash is the cache-busting version, size is the thumbnail size (0 = original image)
+     */
+    public record AvatarImage(String hash, int size, MediaType contentType, byte[] data) {
+        public String etag() {
+            return size == 0 ? "\"" + hash + "\"" : "\"" + hash + "-" + size + "\"";
+        }
+    }
+
+    // Upload written to a temporary file, the caller deletes the file (or hands it over)
+    private record StoredUpload(String hash, Path file, long size) {
+    }
+
+    public AvatarService(AvatarRepository avatarRepository, AvatarThumbnailService thumbnailService,
+                         TransactionTemplate transactionTemplate) {
+        this.avatarRepository = avatarRepository;
+        this.thumbnailService = thumbnailService;
+        this.transactionTemplate = transactionTemplate;
+        this.defaultAvatar = loadDefaultAvatar();
+        this.defaultAvatarHash = sha256Hex(defaultAvatar);
+        this.defaultThumbnails = createDefaultThumbnails(thumbnailService, defaultAvatar);
+    }
+
+    /*
+     * Saves the image (once per distinct content) and returns its hash
+     * Call it in the transaction that points the user to the image, see AvatarRepository.save
+     * Throws ResponseStatusException 400 for anything but a PNG, JPEG or GIF image
+     */
+    public String store(byte[] data) {
+        requireImage(Arrays.copyOf(data, Math.min(data.length, MAGIC_BYTES)));
+        String hash = sha256Hex(data);
+        avatarRepository.save(hash, data);
+        return hash;
+    }
+
+    // Removes the image if no user points to it anymore; null (the default avatar) is ignored
+    public void release(String hash) {
+        if (hash != null) {
+            avatarRepository.deleteIfUnreferenced(hash);
+        }
+    }
+
+    /*
+     * Hashes an upload into a temporary file
+     * Throws ResponseStatusException 413 over the size limit and 400 for an empty upload or one that is not a PNG, JPEG or GIF image
+     */
+    private StoredUpload writeToFile(InputStream upload) throws IOException {
+        Path tempFile = Files.createTempFile("avatar-", ".upload");
+        boolean kept = false;
+        try {
+            MessageDigest digest = newSha256();
+            long size;
+            try (InputStream in = new DigestInputStream(upload, digest);
+                 OutputStream out = Files.newOutputStream(tempFile)) {
+                size = copyLimited(in, out);
+            }
+            if (size == 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Avatar is empty");
+            }
+            try (InputStream in = Files.newInputStream(tempFile)) {
+                requireImage(in.readNBytes(MAGIC_BYTES));
+            }
+
+            kept = true;
+            return new StoredUpload(HexFormat.of().formatHex(digest.digest()), tempFile, size);
+        } finally {
+            if (!kept) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    /*
+     * Streams the upload into the store and points the user to it, returns false if the user does not exist
+     * Thumbnails are then generated from the same temporary file in the background
+     */
+    public boolean updateAvatar(String login, InputStream upload, String fileName) throws IOException {
+        StoredUpload stored = writeToFile(upload);
+        List<String> previous;
+        try {
+            previous = saveAndAssign(login, stored, fileName);
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(stored.file());
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(stored.file());
+            throw e;
+        }
+
+        if (previous.isEmpty()) {
+            Files.deleteIfExists(stored.file());
+            return false;
+        }
+        // Only after the commit: the previous image is unreferenced now unless somebody else uses it
+        String previousHash = previous.get(0);
+        if (!stored.hash().equals(previousHash)) {
+            release(previousHash);
+        }
+        thumbnailService.schedule(stored.hash(), stored.file());
+        return true;
+    }
+
+    // Previous hash of the user as in AvatarRepository.assignToUser; without such user nothing is stored
+    private List<String> saveAndAssign(String login, StoredUpload stored, String fileName) {
+        return transactionTemplate.execute(status -> {
+            try (InputStream in = Files.newInputStream(stored.file())) {
+                avatarRepository.save(stored.hash(), in, stored.size());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            List<String> previous = avatarRepository.assignToUser(login, stored.hash(), fileName);
+            if (previous.isEmpty()) {
+                status.setRollbackOnly();
+            }
+            return previous;
+        });
+    }
+
+    /*
+     * Avatar of the user (the default one if the user has none), empty if there is no such user
+     * requestedSize > 0 selects the smallest thumbnail of at least that size;
+     * the original image is returned when there is no such thumbnail (yet)
+     */
+    public Optional<AvatarImage> findUserAvatar(long userId, int requestedSize) {
+        int size = thumbnailSizeFor(requestedSize);
+        return avatarRepository.findUserAvatar(userId).map(ref -> {
+            if (ref.hash() != null) {
+                if (size > 0) {
+                    Optional<byte[]> variant = avatarRepository.findVariant(ref.hash(), size);
+                    if (variant.isPresent()) {
+                        return new AvatarImage(ref.hash(), size, MediaType.IMAGE_PNG, variant.get());
+                    }
+                }
+                Optional<byte[]> original = avatarRepository.findData(ref.hash());
+                if (original.isPresent()) {
+                    return new AvatarImage(ref.hash(), 0, contentTypeOf(original.get()), original.get());
+                }
+            }
+            return defaultAvatarImage(size);
+        });
+    }
+
+    private AvatarImage defaultAvatarImage(int size) {
+        byte[] thumbnail = defaultThumbnails.get(size);
+        if (thumbnail != null) {
+            return new AvatarImage(defaultAvatarHash, size, MediaType.IMAGE_PNG, thumbnail);
+        }
+        return new AvatarImage(defaultAvatarHash, 0, contentTypeOf(defaultAvatar), defaultAvatar);
+    }
+
+    // Smallest thumbnail size covering the request, 0 (original) for no request or a larger one
+    private static int thumbnailSizeFor(int requestedSize) {
+        if (requestedSize <= 0) {
+            return 0;
+        }
+        for (int size : AvatarThumbnailService.SIZES) {
+            if (size >= requestedSize) {
+                return size;
+            }
+        }
+        return 0;
+    }
+
+    public static String sha256Hex(byte[] data) {
+        return HexFormat.of().formatHex(newSha256().digest(data));
+    }
+
+    private long copyLimited(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+            if (total > maxAvatarBytes) {
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Avatar is larger than " + maxAvatarBytes + " bytes");
+            }
+            out.write(buffer, 0, read);
+        }
+        return total;
+    }
+
+    private static void requireImage(byte[] header) {
+        if (imageTypeOf(header) == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Avatar must be a PNG, JPEG or GIF image");
+        }
+    }
+
+    // Images stored before the type check may be anything, they are served as plain bytes
+    private static MediaType contentTypeOf(byte[] data) {
+        MediaType type = imageTypeOf(data);
+        return type != null ? type : MediaType.APPLICATION_OCTET_STREAM;
+    }
+
+    // Type of the image from its first bytes, null if it is not a PNG, JPEG or GIF
+    private static MediaType imageTypeOf(byte[] data) {
+        if (startsWith(data, PNG_MAGIC)) {
+            return MediaType.IMAGE_PNG;
+        }
+        if (startsWith(data, JPEG_MAGIC)) {
+            return MediaType.IMAGE_JPEG;
+        }
+        if (startsWith(data, GIF87_MAGIC) || startsWith(data, GIF89_MAGIC)) {
+            return MediaType.IMAGE_GIF;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        return data.length >= prefix.length && Arrays.equals(data, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static Map<Integer, byte[]> createDefaultThumbnails(AvatarThumbnailService thumbnailService, byte[] image) {
+        try {
+            return thumbnailService.createThumbnails(image);
+        } catch (Exception e) {
+            ServerLogger.logServer(ServerLogger.Level.WARNING, "Cannot create thumbnails of the default avatar: " + e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private static byte[] loadDefaultAvatar() {
+        try (InputStream input = AvatarService.class.getResourceAsStream(DEFAULT_AVATAR_RESOURCE)) {
+            if (input == null) {
+                ServerLogger.logServer(ServerLogger.Level.ERROR, "Default avatar " + DEFAULT_AVATAR_RESOURCE + " is missing.");
+                return new byte[0];
+            }
+            return input.readAllBytes();
+        } catch (IOException e) {
+            ServerLogger.logServer(ServerLogger.Level.ERROR, "Failed to load the default avatar: " + e.getMessage());
+            return new byte[0];
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.main.unimapapi.services;
+
+import org.main.unimapapi.configs.AppConfig;
+import org.main.unimapapi.repository_queries.AvatarRepository;
+import org.main.unimapapi.utils.ServerLogger;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Generation of fixed-size avatar thumbnails (`avatar_variants`)
+ *
+ * - an uploaded image is decoded once and scaled to every size of SIZES (square, centre-cropped, PNG)
+ * - the work runs on a small bounded pool, the upload request does not wait for it
+ * - when the pool is full the task is dropped; until variants exist the original image is served
+ * - the image dimensions are read from the header first, an image over MAX_PIXELS is never decoded
+ *   (a small file may declare a huge canvas)
+ */
+@Service
+public class AvatarThumbnailService {
+    public static final int[] SIZES = {64, 128, 256};
+    private static final int QUEUE_CAPACITY = 32;
+    // 4096 x 4096, decoded as ARGB that is 64 MB
+    private static final long MAX_PIXELS = 4096L * 4096L;
+
+    private final AvatarRepository avatarRepository;
+
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private final ThreadPoolExecutor executor;
+
+    public record Stats(long generated, long failed, long rejected, int queued, int workers) {
+    }
+
+    public AvatarThumbnailService(AvatarRepository avatarRepository) {
+        this.avatarRepository = avatarRepository;
+
+        int workers = AppConfig.getAvatarThumbnailWorkers();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "avatar-thumbnail-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /*
+     * Queues thumbnail generation for a stored image
+     * The task takes ownership of `imageFile` and deletes it when done (also when the task is rejected)
+     */
+    public void schedule(String hash, Path imageFile) {
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(hash, imageFile);
+                } finally {
+                    deleteQuietly(imageFile);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            deleteQuietly(imageFile);
+            ServerLogger.logServer(ServerLogger.Level.WARNING, "Avatar thumbnail queue is full, skipping " + hash);
+        }
+    }
+
+    // Thumbnails of an image held in memory (the bundled default avatar), size -> PNG bytes
+    public Map<Integer, byte[]> createThumbnails(byte[] image) {
+        try {
+            BufferedImage decoded = decodeBounded(ImageIO.createImageInputStream(new ByteArrayInputStream(image)));
+            return decoded != null ? createThumbnails(decoded) : Map.of();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(generated.sum(), failed.sum(), rejected.sum(), executor.getQueue().size(), executor.getPoolSize());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void generate(String hash, Path imageFile) {
+        try {
+            // The same image may have been uploaded before
+            if (avatarRepository.hasVariants(hash)) {
+                return;
+            }
+            BufferedImage decoded = decodeBounded(ImageIO.createImageInputStream(imageFile.toFile()));
+            if (decoded == null) {
+                failed.increment();
+                ServerLogger.logServer(ServerLogger.Level.WARNING, "Avatar " + hash + " is not a readable image or is larger than "
+                        + MAX_PIXELS + " pixels");
+                return;
+            }
+
+            for (Map.Entry<Integer, byte[]> variant : createThumbnails(decoded).entrySet()) {
+                avatarRepository.saveVariant(hash, variant.getKey(), variant.getValue());
+            }
+            generated.increment();
+        } catch (Exception e) {
+            failed.increment();
+            ServerLogger.logServer(ServerLogger.Level.ERROR, "Avatar thumbnail generation failed for " + hash + ": " + e.getMessage());
+        }
+    }
+
+    /*
+     * Decodes the first image of the stream (and closes it), null if no reader understands it
+     * or its header declares more than MAX_PIXELS; the size is checked before any pixel buffer is allocated
+     */
+    private static BufferedImage decodeBounded(ImageInputStream input) throws IOException {
+        if (input == null) {
+            return null;
+        }
+        try (input) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_PIXELS) {
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static Map<Integer, byte[]> createThumbnails(BufferedImage image) throws IOException {
+        // Centre square of the image, scaled down (never up) to each size
+        int side = Math.min(image.getWidth(), image.getHeight());
+        BufferedImage square = image.getSubimage((image.getWidth() - side) / 2, (image.getHeight() - side) / 2, side, side);
+
+        Map<Integer, byte[]> thumbnails = new LinkedHashMap<>();
+        for (int size : SIZES) {
+            int target = Math.min(size, side);
+            BufferedImage scaled = new BufferedImage(target, target, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(square, 0, 0, target, target, null);
+            } finally {
+                graphics.dispose();
+            }
+
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(scaled, "png", png);
+            thumbnails.put(size, png.toByteArray());
+        }
+        return thumbnails;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            ServerLogger.logServer(ServerLogger.Level.WARNING, "Cannot delete temporary avatar file " + file + ": " + e.getMessage());
+        }
+    }
+}
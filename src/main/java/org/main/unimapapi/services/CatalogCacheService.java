@@ -0,0 +1,147 @@
+package org.main.unimapapi.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.main.unimapapi.dtos.Subject_dto;
+import org.main.unimapapi.dtos.Teacher_dto;
+import org.main.unimapapi.repository_queries.DataFatcherRepository;
+import org.main.unimapapi.utils.PreEncodedJson;
+import org.main.unimapapi.utils.ServerLogger;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * In-memory cache of the subject and teacher catalog
+ *
+ * The catalog changes rarely but is downloaded by every client at startup,
+ * so both lists are kept as one immutable, versioned snapshot:
+ * - the first request loads it, then it is refreshed on a schedule
+ * - an admin can force a refresh (AdminController)
+ * Readers never touch the database, a refresh swaps the whole snapshot at once
+ *
+ * Each snapshot also carries the response bodies already encoded as JSON (+ gzip) with an ETag,
+ * the /resources endpoints write those bytes directly
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogCacheService {
+    private final DataFatcherRepository dataFatcherRepository;
+    private final ObjectMapper objectMapper;
+
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+    // Not `synchronized`: a refresh waits on JDBC, which would pin a virtual thread to its carrier
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private final LongAdder subjectHits = new LongAdder();
+    private final LongAdder teacherHits = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private volatile long lastRefreshDurationMillis;
+
+    public record CatalogSnapshot(long version, long loadedAt, List<Subject_dto> subjects, List<Teacher_dto> teachers,
+                                  PreEncodedJson subjectsJson, PreEncodedJson teachersJson) {
+    }
+
+    public record Stats(long version, long ageMillis, long subjectHits, long teacherHits,
+                        long refreshes, long refreshFailures, long lastRefreshDurationMillis) {
+    }
+
+    public List<Subject_dto> getSubjects() {
+        subjectHits.increment();
+        return getSnapshot().subjects();
+    }
+
+    public List<Teacher_dto> getTeachers() {
+        teacherHits.increment();
+        return getSnapshot().teachers();
+    }
+
+    // {"subjects": [...]} already encoded
+    public PreEncodedJson getSubjectsJson() {
+        subjectHits.increment();
+        return getSnapshot().subjectsJson();
+    }
+
+    // {"teachers": [...]} already encoded
+    public PreEncodedJson getTeachersJson() {
+        teacherHits.increment();
+        return getSnapshot().teachersJson();
+    }
+
+    public CatalogSnapshot getSnapshot() {
+        CatalogSnapshot current = snapshot.get();
+        if (current != null) {
+            return current;
+        }
+        refreshLock.lock();
+        try {
+            current = snapshot.get();
+            return current != null ? current : refresh();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    // Loads both lists from the database and publishes them as a new snapshot
+    public CatalogSnapshot refresh() {
+        refreshLock.lock();
+        long start = System.currentTimeMillis();
+        try {
+            List<Subject_dto> subjects = List.copyOf(dataFatcherRepository.fetchAllSubjects());
+            List<Teacher_dto> teachers = List.copyOf(dataFatcherRepository.fetchAllTeachers());
+
+            CatalogSnapshot loaded = new CatalogSnapshot(versions.incrementAndGet(), System.currentTimeMillis(), subjects, teachers,
+                    encode("subjects", subjects), encode("teachers", teachers));
+            snapshot.set(loaded);
+            refreshes.increment();
+            ServerLogger.logServer(ServerLogger.Level.INFO, "Catalog snapshot " + loaded.version() + " loaded: "
+                    + subjects.size() + " subjects, " + teachers.size() + " teachers");
+            return loaded;
+        } catch (RuntimeException e) {
+            refreshFailures.increment();
+            ServerLogger.logServer(ServerLogger.Level.ERROR, "Catalog refresh failed: " + e.getMessage());
+            throw e;
+        } finally {
+            lastRefreshDurationMillis = System.currentTimeMillis() - start;
+            refreshLock.unlock();
+        }
+    }
+
+    // Periodic refresh, skipped until the catalog was requested for the first time
+    @Scheduled(fixedDelayString = "${catalog.refresh-interval-ms:600000}", initialDelayString = "${catalog.refresh-interval-ms:600000}")
+    public void scheduledRefresh() {
+        if (snapshot.get() == null) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // The previous snapshot stays in use, the failure is already logged
+        }
+    }
+
+    private PreEncodedJson encode(String field, List<?> items) {
+        try {
+            return new PreEncodedJson(objectMapper.writeValueAsBytes(Map.of(field, items)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode " + field + ": " + e.getMessage(), e);
+        }
+    }
+
+    public Stats getStats() {
+        CatalogSnapshot current = snapshot.get();
+        long version = current != null ? current.version() : 0;
+        long age = current != null ? System.currentTimeMillis() - current.loadedAt() : -1;
+        return new Stats(version, age, subjectHits.sum(), teacherHits.sum(),
+                refreshes.sum(), refreshFailures.sum(), lastRefreshDurationMillis);
+    }
+}
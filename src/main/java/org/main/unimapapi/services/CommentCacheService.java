@@ -0,0 +1,196 @@
+package org.main.unimapapi.services;
+
+import org.main.unimapapi.configs.AppConfig;
+import org.main.unimapapi.dtos.CommentPage_dto;
+import org.main.unimapapi.dtos.Comment_dto;
+import org.main.unimapapi.entities.CommentKind;
+import org.main.unimapapi.repository_queries.CommentsRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Cache of comment pages per subject / teacher
+ *
+ * - one entry per (kind, id), holding one first page of MAX_PAGE_SIZE comments per sort, user names included;
+ *   smaller first pages are sliced from it, pages after a cursor are always read from the database
+ * - bounded LRU over the entities (COMMENT_CACHE_SIZE), so at most 2 x MAX_PAGE_SIZE comments per entity are held;
+ *   pages expire after COMMENT_CACHE_TTL_MS
+ * - single flight: concurrent misses of one page wait for one database read instead of each running it
+ * - CommentService invalidates the entity after every add / delete, so a writer sees its change at once
+ */
+@Service
+public class CommentCacheService {
+    // Largest page a client may request, the size of every cached first page
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private final CommentsRepository commentsRepository;
+    private final int maxEntities = AppConfig.getCommentCacheSize();
+    private final long ttlNanos = TimeUnit.MILLISECONDS.toNanos(AppConfig.getCommentCacheTtlMs());
+
+    private record EntityKey(CommentKind kind, String entityId) {
+    }
+
+    private record CachedPage(CompletableFuture<CommentPage_dto> page, long loadedAtNanos) {
+    }
+
+    // Guarded by `lock`; access-ordered, so the eldest entry is the least recently used entity
+    private final LinkedHashMap<EntityKey, Map<CommentsRepository.Sort, CachedPage>> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    public record Stats(int entities, long hits, long misses, double hitRatio, long evictions, long invalidations,
+                        long loads, double averageLoadMillis) {
+    }
+
+    public CommentCacheService(CommentsRepository commentsRepository) {
+        this.commentsRepository = commentsRepository;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<EntityKey, Map<CommentsRepository.Sort, CachedPage>> eldest) {
+                if (size() > maxEntities) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // limit is at most MAX_PAGE_SIZE
+    public CommentPage_dto getPage(CommentKind kind, String entityId, CommentsRepository.Sort sort, String cursor, int limit) {
+        if (cursor != null && !cursor.isBlank()) {
+            return commentsRepository.findPage(kind, entityId, sort, cursor, limit);
+        }
+        return slice(firstPage(kind, entityId, sort), sort, limit);
+    }
+
+    // All comments of the entity (the unpaginated list); the first MAX_PAGE_SIZE come from the cache
+    public List<Comment_dto> getAll(CommentKind kind, String entityId, CommentsRepository.Sort sort) {
+        CommentPage_dto first = firstPage(kind, entityId, sort);
+        if (first.getNextCursor() == null) {
+            return first.getComments();
+        }
+        List<Comment_dto> all = new ArrayList<>(first.getComments());
+        all.addAll(commentsRepository.findAllAfter(kind, entityId, sort, first.getNextCursor()));
+        return all;
+    }
+
+    // First MAX_PAGE_SIZE comments of the entity in the given order
+    private CommentPage_dto firstPage(CommentKind kind, String entityId, CommentsRepository.Sort sort) {
+        EntityKey entityKey = new EntityKey(kind, entityId);
+        CompletableFuture<CommentPage_dto> cachedPage = null;
+        CompletableFuture<CommentPage_dto> pending = null;
+
+        lock.lock();
+        try {
+            Map<CommentsRepository.Sort, CachedPage> pages = entries.computeIfAbsent(entityKey, key -> new EnumMap<>(CommentsRepository.Sort.class));
+            CachedPage cached = pages.get(sort);
+            if (cached != null && !isExpired(cached)) {
+                hits.increment();
+                cachedPage = cached.page();
+            } else {
+                misses.increment();
+                pending = new CompletableFuture<>();
+                pages.put(sort, new CachedPage(pending, System.nanoTime()));
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Waiting and loading happen outside the lock; other readers of the page wait for `pending`
+        return cachedPage != null ? await(cachedPage) : load(entityKey, sort, pending);
+    }
+
+    // The first `limit` comments of a cached first page, with the cursor of what follows them
+    private static CommentPage_dto slice(CommentPage_dto page, CommentsRepository.Sort sort, int limit) {
+        List<Comment_dto> comments = page.getComments();
+        if (comments.size() <= limit) {
+            return page;
+        }
+        List<Comment_dto> sliced = List.copyOf(comments.subList(0, limit));
+        return new CommentPage_dto(sliced, CommentsRepository.cursorAfter(sort, sliced.get(limit - 1)));
+    }
+
+    // Drops all cached pages of the entity
+    public void invalidate(CommentKind kind, String entityId) {
+        lock.lock();
+        try {
+            if (entries.remove(new EntityKey(kind, entityId)) != null) {
+                invalidations.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats getStats() {
+        int size;
+        lock.lock();
+        try {
+            size = entries.size();
+        } finally {
+            lock.unlock();
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long loadCount = loads.sum();
+        return new Stats(size, hitCount, missCount, hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount),
+                evictions.sum(), invalidations.sum(), loadCount, loadCount == 0 ? 0 : loadNanos.sum() / 1_000_000.0 / loadCount);
+    }
+
+    private CommentPage_dto load(EntityKey entityKey, CommentsRepository.Sort sort, CompletableFuture<CommentPage_dto> pending) {
+        long start = System.nanoTime();
+        try {
+            CommentPage_dto page = commentsRepository.findPage(entityKey.kind(), entityKey.entityId(), sort, null, MAX_PAGE_SIZE);
+            pending.complete(page);
+            return page;
+        } catch (RuntimeException e) {
+            // Not cached: the next request tries again
+            lock.lock();
+            try {
+                Map<CommentsRepository.Sort, CachedPage> pages = entries.get(entityKey);
+                if (pages != null && pages.containsKey(sort) && pages.get(sort).page() == pending) {
+                    pages.remove(sort);
+                }
+            } finally {
+                lock.unlock();
+            }
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.increment();
+            loadNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    // A page still being loaded is never expired, its readers share the running load
+    private boolean isExpired(CachedPage cached) {
+        return cached.page().isDone() && System.nanoTime() - cached.loadedAtNanos() > ttlNanos;
+    }
+
+    private static CommentPage_dto await(CompletableFuture<CommentPage_dto> page) {
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
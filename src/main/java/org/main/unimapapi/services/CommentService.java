@@ -0,0 +1,332 @@
+package org.main.unimapapi.services;
+
+import lombok.RequiredArgsConstructor;
+import org.main.unimapapi.dtos.BulkCommentDeleteRequest;
+import org.main.unimapapi.entities.CommentKind;
+import org.main.unimapapi.repository_queries.CommentsRepository;
+import org.main.unimapapi.repository_queries.CommentsRepository.RatedComment;
+import org.main.unimapapi.repository_queries.CommentsRepository.RatingCount;
+import org.main.unimapapi.repository_queries.CommentsRepository.TargetComment;
+import org.main.unimapapi.utils.ServerLogger;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+ * Comment writes and the rating aggregates derived from them
+ *
+ * For every subject and teacher a 1-5 rating histogram is kept in memory (count and sum follow from it):
+ * - it is built from the database on first use (one GROUP BY per comment table)
+ * - every add / delete made through this service updates it right after the database write
+ * - a nightly reconciliation rebuilds it from the database and logs any drift
+ *   (e.g. comments changed directly in the database)
+ * Writes hold the read lock from the database write until the histogram is updated,
+ * a rebuild takes the write lock, so no write is counted twice or lost by a rebuild
+ *
+ * After every write the cached comment pages of the affected entities are dropped (CommentCacheService)
+ *
+ * Bulk deletion (admin) runs in chunks of BULK_DELETE_CHUNK, each one JDBC batch in its own transaction;
+ * aggregates and cache follow every committed chunk, progress is reported between chunks
+ */
+@Service
+@RequiredArgsConstructor
+public class CommentService {
+    private static final int MIN_RATING = 1;
+    private static final int MAX_RATING = 5;
+    private static final int BULK_DELETE_CHUNK = 500;
+
+    private final CommentsRepository commentsRepository;
+    private final CommentCacheService commentCacheService;
+    private final TransactionTemplate transactionTemplate;
+
+    private record EntityKey(CommentKind kind, String entityId) {
+    }
+
+    // Histogram index 0 holds rating 1 ... index 4 rating 5; null until first loaded
+    private volatile Map<EntityKey, AtomicLongArray> ratings;
+    private final ReentrantReadWriteLock ratingsLock = new ReentrantReadWriteLock();
+
+    private final LongAdder reconciliations = new LongAdder();
+    private final LongAdder driftedEntities = new LongAdder();
+
+    // histogram[0] is the number of 1-star ratings ... histogram[4] of 5-star ratings
+    public record RatingSummary(String kind, String id, long count, long sum, double average, long[] histogram) {
+    }
+
+    public record Stats(int entities, long reconciliations, long driftedEntities) {
+    }
+
+    // Progress of a bulk deletion: comments of `kind` deleted so far out of `total` selected
+    public record BulkDeleteProgress(String kind, int deleted, int total) {
+    }
+
+    // Throws IllegalArgumentException for a rating outside MIN_RATING..MAX_RATING, before anything is stored
+    public void addComment(CommentKind kind, long userId, String entityId, String description, int rating, int levelAccess) {
+        if (rating < MIN_RATING || rating > MAX_RATING) {
+            throw new IllegalArgumentException("Rating must be between " + MIN_RATING + " and " + MAX_RATING);
+        }
+        ratingsLock.readLock().lock();
+        try {
+            commentsRepository.addComment(kind, userId, entityId, description, rating, levelAccess);
+            recordRating(kind, entityId, String.valueOf(rating), 1);
+            commentCacheService.invalidate(kind, entityId);
+        } finally {
+            ratingsLock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Deletes the comment; with `authorId` only if that user wrote it (null = any author, for admins)
+     * Returns false if no such comment was deleted
+     */
+    public boolean deleteComment(CommentKind kind, int commentId, Long authorId) {
+        ratingsLock.readLock().lock();
+        try {
+            Optional<RatedComment> deletedComment = authorId == null
+                    ? commentsRepository.deleteComment(kind, commentId)
+                    : commentsRepository.deleteUserComment(kind, commentId, authorId);
+            return deletedComment
+                    .map(deleted -> {
+                        recordRating(kind, deleted.entityId(), deleted.rating(), -1);
+                        commentCacheService.invalidate(kind, deleted.entityId());
+                        return true;
+                    })
+                    .orElse(false);
+        } finally {
+            ratingsLock.readLock().unlock();
+        }
+    }
+
+    // Deletes all comments of the user (subjects and teachers)
+    public void deleteAllUserComments(long userId) {
+        deleteAllUserComments(userId, () -> null);
+    }
+
+    /*
+     * Deletes all comments of the user and runs `sameTransaction` (e.g. deleting the account) in one transaction,
+     * returns its result; the aggregates and the cache follow only after the commit
+     */
+    public <T> T deleteAllUserComments(long userId, Supplier<T> sameTransaction) {
+        ratingsLock.readLock().lock();
+        try {
+            Map<CommentKind, List<RatedComment>> deletedByKind = new EnumMap<>(CommentKind.class);
+            T result = transactionTemplate.execute(status -> {
+                for (CommentKind kind : CommentKind.values()) {
+                    deletedByKind.put(kind, commentsRepository.deleteUserComments(kind, userId));
+                }
+                return sameTransaction.get();
+            });
+            deletedByKind.forEach((kind, deleted) -> deleted.forEach(comment -> {
+                recordRating(kind, comment.entityId(), comment.rating(), -1);
+                commentCacheService.invalidate(kind, comment.entityId());
+            }));
+            return result;
+        } finally {
+            ratingsLock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Checks a bulk deletion request, returns the comment kinds it searches
+     * Throws IllegalArgumentException for an empty selection, an unknown kind or commentIds without a kind
+     */
+    public List<CommentKind> validateBulkDelete(BulkCommentDeleteRequest request) {
+        if (!request.hasSelection()) {
+            throw new IllegalArgumentException("No comments selected");
+        }
+        if (request.getKind() == null) {
+            if (request.getCommentIds() != null && !request.getCommentIds().isEmpty()) {
+                throw new IllegalArgumentException("kind is required together with commentIds");
+            }
+            return List.of(CommentKind.values());
+        }
+        return List.of(CommentKind.of(request.getKind()));
+    }
+
+    /*
+     * Deletes all comments of `kinds` matching the request (kinds from validateBulkDelete), returns how many were deleted
+     * Every chunk is its own transaction; `progress` is called between chunks, outside the transaction and the lock,
+     * so a slow caller (e.g. a streamed HTTP response) holds no row locks. If it throws, the chunks deleted so far stay deleted
+     */
+    public int bulkDelete(List<CommentKind> kinds, BulkCommentDeleteRequest request, Consumer<BulkDeleteProgress> progress) {
+        int total = 0;
+        for (CommentKind kind : kinds) {
+            List<Integer> targets = commentsRepository.selectIdsForDeletion(kind, request.getCommentIds(),
+                    request.getUserId(), request.getEntityId(), request.getFrom(), request.getTo());
+            int deletedCount = 0;
+            progress.accept(new BulkDeleteProgress(kind.path(), 0, targets.size()));
+            for (int start = 0; start < targets.size(); start += BULK_DELETE_CHUNK) {
+                deletedCount += deleteChunk(kind, targets.subList(start, Math.min(start + BULK_DELETE_CHUNK, targets.size())));
+                progress.accept(new BulkDeleteProgress(kind.path(), deletedCount, targets.size()));
+            }
+            total += deletedCount;
+        }
+        ServerLogger.logServer(ServerLogger.Level.INFO, "Bulk deletion removed " + total + " comments");
+        return total;
+    }
+
+    // Locks the comments still present, deletes them in one JDBC batch and, once committed, updates aggregates and cache
+    private int deleteChunk(CommentKind kind, List<Integer> commentIds) {
+        ratingsLock.readLock().lock();
+        try {
+            List<TargetComment> deleted = transactionTemplate.execute(status -> {
+                List<TargetComment> locked = commentsRepository.lockForDeletion(kind, commentIds);
+                if (!locked.isEmpty()) {
+                    commentsRepository.deleteBatch(kind, locked.stream().map(TargetComment::commentId).toList());
+                }
+                return locked;
+            });
+
+            for (TargetComment comment : deleted) {
+                recordRating(kind, comment.entityId(), comment.rating(), -1);
+            }
+            deleted.stream().map(TargetComment::entityId).distinct()
+                    .forEach(entityId -> commentCacheService.invalidate(kind, entityId));
+            return deleted.size();
+        } finally {
+            ratingsLock.readLock().unlock();
+        }
+    }
+
+    public RatingSummary getRatingSummary(CommentKind kind, String entityId) {
+        AtomicLongArray histogram = loadedRatings().get(new EntityKey(kind, entityId));
+        long[] counts = new long[MAX_RATING];
+        long count = 0;
+        long sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = histogram != null ? Math.max(0, histogram.get(i)) : 0;
+            count += counts[i];
+            sum += counts[i] * (i + MIN_RATING);
+        }
+        return new RatingSummary(kind.path(), entityId, count, sum, count == 0 ? 0 : (double) sum / count, counts);
+    }
+
+    public Stats getStats() {
+        Map<EntityKey, AtomicLongArray> current = ratings;
+        return new Stats(current != null ? current.size() : 0, reconciliations.sum(), driftedEntities.sum());
+    }
+
+    // Rebuilds the aggregates from the database every night, only if they are in use
+    @Scheduled(cron = "${comments.rating-reconcile-cron:0 30 3 * * *}")
+    public void scheduledReconciliation() {
+        if (ratings == null) {
+            return;
+        }
+        try {
+            reconcileRatings();
+        } catch (RuntimeException e) {
+            ServerLogger.logServer(ServerLogger.Level.ERROR, "Rating reconciliation failed: " + e.getMessage());
+        }
+    }
+
+    // Replaces the aggregates with fresh ones from the database, returns the number of entities that differed
+    public int reconcileRatings() {
+        ratingsLock.writeLock().lock();
+        try {
+            Map<EntityKey, AtomicLongArray> previous = ratings;
+            Map<EntityKey, AtomicLongArray> fresh = loadRatings();
+            ratings = fresh;
+            reconciliations.increment();
+
+            if (previous == null) {
+                return 0;
+            }
+            int drifted = countDrift(previous, fresh);
+            driftedEntities.add(drifted);
+            if (drifted > 0) {
+                ServerLogger.logServer(ServerLogger.Level.WARNING, "Rating reconciliation corrected " + drifted + " entities");
+            }
+            return drifted;
+        } finally {
+            ratingsLock.writeLock().unlock();
+        }
+    }
+
+    private Map<EntityKey, AtomicLongArray> loadedRatings() {
+        Map<EntityKey, AtomicLongArray> current = ratings;
+        if (current != null) {
+            return current;
+        }
+        ratingsLock.writeLock().lock();
+        try {
+            if (ratings == null) {
+                ratings = loadRatings();
+            }
+            return ratings;
+        } finally {
+            ratingsLock.writeLock().unlock();
+        }
+    }
+
+    private Map<EntityKey, AtomicLongArray> loadRatings() {
+        Map<EntityKey, AtomicLongArray> loaded = new ConcurrentHashMap<>();
+        for (CommentKind kind : CommentKind.values()) {
+            for (RatingCount row : commentsRepository.countRatings(kind)) {
+                int index = histogramIndex(row.rating());
+                if (index >= 0) {
+                    loaded.computeIfAbsent(new EntityKey(kind, row.entityId()), key -> new AtomicLongArray(MAX_RATING))
+                            .addAndGet(index, row.count());
+                }
+            }
+        }
+        return loaded;
+    }
+
+    // Not loaded yet: nothing to update, the first load reads the new state from the database
+    private void recordRating(CommentKind kind, String entityId, String rating, int delta) {
+        Map<EntityKey, AtomicLongArray> current = ratings;
+        int index = histogramIndex(rating);
+        if (current == null || index < 0) {
+            return;
+        }
+        current.computeIfAbsent(new EntityKey(kind, entityId), key -> new AtomicLongArray(MAX_RATING))
+                .addAndGet(index, delta);
+    }
+
+    // Ratings outside 1-5 (or not numbers) are not part of the aggregates
+    private static int histogramIndex(String rating) {
+        try {
+            int value = Integer.parseInt(rating.trim());
+            return value >= MIN_RATING && value <= MAX_RATING ? value - MIN_RATING : -1;
+        } catch (NumberFormatException | NullPointerException e) {
+            return -1;
+        }
+    }
+
+    private static int countDrift(Map<EntityKey, AtomicLongArray> previous, Map<EntityKey, AtomicLongArray> fresh) {
+        int drifted = 0;
+        for (EntityKey key : previous.keySet()) {
+            if (!Arrays.equals(counts(previous.get(key)), counts(fresh.get(key)))) {
+                drifted++;
+            }
+        }
+        for (EntityKey key : fresh.keySet()) {
+            if (!previous.containsKey(key) && !Arrays.equals(counts(fresh.get(key)), new long[MAX_RATING])) {
+                drifted++;
+            }
+        }
+        return drifted;
+    }
+
+    private static long[] counts(AtomicLongArray histogram) {
+        long[] counts = new long[MAX_RATING];
+        if (histogram != null) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = histogram.get(i);
+            }
+        }
+        return counts;
+    }
+}
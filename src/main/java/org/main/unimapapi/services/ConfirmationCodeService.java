@@ -2,38 +2,103 @@ package org.main.unimapapi.services;
 
 import org.main.unimapapi.entities.ConfirmationCode;
 import org.main.unimapapi.repository_queries.ConfirmationCodeRepository;
+import org.main.unimapapi.utils.EmailSender;
 import org.main.unimapapi.utils.ServerLogger;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import lombok.RequiredArgsConstructor;
 
-import java.util.Random;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
 
+/*
+ * Confirmation codes (email confirmation, password recovery)
+ *
+ * - a code is verified and consumed by a single DELETE ... RETURNING (ConfirmationCodeRepository.consume)
+ * - failed attempts are counted per user in memory; after MAX_FAILED_ATTEMPTS within ATTEMPT_WINDOW_MS
+ *   the user's codes are dropped and further attempts are refused without a query
+ * - codes issued here are kept in an expiry-ordered index, the purge deletes expired rows in batches
+ *   as soon as one of them expires, plus a full sweep now and then for codes issued by other instances
+ */
 @Service
 @RequiredArgsConstructor
 public class ConfirmationCodeService {
+    private static final long CODE_VALIDITY_MINUTES = 1;
+    private static final int MAX_FAILED_ATTEMPTS = 5;
+    private static final long ATTEMPT_WINDOW_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long FULL_SWEEP_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     private final ConfirmationCodeRepository confirmationCodeRepository;
+    private final EmailSender emailSender;
+
+    private final ConcurrentSkipListSet<Expiry> expiryIndex = new ConcurrentSkipListSet<>();
+    private final ConcurrentHashMap<Long, FailedAttempts> failedAttempts = new ConcurrentHashMap<>();
+    private volatile long lastFullSweep;
+
+    // Expiry of one issued code, ordered by time
+    private record Expiry(long expiresAt, long userId) implements Comparable<Expiry> {
+        @Override
+        public int compareTo(Expiry other) {
+            int byTime = Long.compare(expiresAt, other.expiresAt);
+            return byTime != 0 ? byTime : Long.compare(userId, other.userId);
+        }
+    }
+
+    private record FailedAttempts(int count, long windowStart) {
+    }
 
     public void save(ConfirmationCode confirmationCode) {
         confirmationCodeRepository.save(confirmationCode);
     }
 
+    /*
+     * Creates a confirmation code for the user and queues its email
+     * Both rows are written in one transaction (transactional outbox):
+     * a code is never stored without its email, and the email never goes out for a code that was rolled back
+     * Older codes of the user stop being valid
+     */
+    @Transactional
+    public void issueCode(Long userId, String email) {
+        String code = generateRandomCode();
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(CODE_VALIDITY_MINUTES);
+
+        confirmationCodeRepository.deleteByUserId(userId);
+        confirmationCodeRepository.save(new ConfirmationCode(userId, code, expiresAt));
+        emailSender.sendVerificationCode(email, code);
+        expiryIndex.add(new Expiry(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(CODE_VALIDITY_MINUTES), userId));
+    }
+
     public static String generateRandomCode() {
-        Random random = new Random();
         StringBuilder code = new StringBuilder();
         for (int i = 0; i < 6; i++) {
-            code.append(random.nextInt(10));
+            code.append(RANDOM.nextInt(10));
         }
         return code.toString();
     }
 
 
     public boolean validateConfirmationCode(Long userId, String code) {
+        if (userId == null || code == null) {
+            return false;
+        }
         try {
-            ServerLogger.logServer(ServerLogger.Level.INFO, "VALIDATE CONFIRMATION CODE "+userId+" "+code);
-            if (confirmationCodeRepository.find(userId, code)) {
-                confirmationCodeRepository.deleteByUserId(userId, code);
+            if (isLockedOut(userId)) {
+                ServerLogger.logServer(ServerLogger.Level.WARNING, "Too many confirmation code attempts for user " + userId);
+                return false;
+            }
+
+            if (confirmationCodeRepository.consume(userId, code)) {
+                failedAttempts.remove(userId);
                 return true;
             }
+            recordFailure(userId);
             return false;
         } catch (Exception e) {
             ServerLogger.logServer(ServerLogger.Level.ERROR, "Error during confirmation code validation: " + e.getMessage());
@@ -41,5 +106,52 @@ public class ConfirmationCodeService {
         }
     }
 
+    // Deletes expired codes once the earliest known code expired, and at least every FULL_SWEEP_INTERVAL_MS
+    @Scheduled(fixedDelay = 30_000)
+    public void purgeExpiredCodes() {
+        long now = System.currentTimeMillis();
+        Expiry first = expiryIndex.isEmpty() ? null : expiryIndex.first();
+        boolean localExpired = first != null && first.expiresAt() <= now;
+        if (!localExpired && now - lastFullSweep < FULL_SWEEP_INTERVAL_MS) {
+            return;
+        }
+
+        try {
+            int purged = 0;
+            int deleted;
+            do {
+                deleted = confirmationCodeRepository.deleteExpired(PURGE_BATCH_SIZE);
+                purged += deleted;
+            } while (deleted == PURGE_BATCH_SIZE);
+
+            expiryIndex.headSet(new Expiry(now, Long.MAX_VALUE), true).clear();
+            failedAttempts.values().removeIf(attempts -> now - attempts.windowStart() > ATTEMPT_WINDOW_MS);
+            lastFullSweep = now;
+            if (purged > 0) {
+                ServerLogger.logServer(ServerLogger.Level.INFO, "Purged " + purged + " expired confirmation codes");
+            }
+        } catch (Exception e) {
+            ServerLogger.logServer(ServerLogger.Level.ERROR, "Failed to purge expired confirmation codes: " + e.getMessage());
+        }
+    }
+
+    private boolean isLockedOut(long userId) {
+        FailedAttempts attempts = failedAttempts.get(userId);
+        return attempts != null
+                && attempts.count() >= MAX_FAILED_ATTEMPTS
+                && System.currentTimeMillis() - attempts.windowStart() <= ATTEMPT_WINDOW_MS;
+    }
 
-}
\ No newline at end of file
+    private void recordFailure(long userId) {
+        long now = System.currentTimeMillis();
+        FailedAttempts attempts = failedAttempts.compute(userId, (id, current) ->
+                current == null || now - current.windowStart() > ATTEMPT_WINDOW_MS
+                        ? new FailedAttempts(1, now)
+                        : new FailedAttempts(current.count() + 1, current.windowStart()));
+
+        if (attempts.count() >= MAX_FAILED_ATTEMPTS) {
+            // The code cannot be guessed any more, the user has to request a new one after the window
+            confirmationCodeRepository.deleteByUserId(userId);
+        }
+    }
+}
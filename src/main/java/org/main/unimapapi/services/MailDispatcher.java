@@ -0,0 +1,173 @@
+package org.main.unimapapi.services;
+
+import org.main.unimapapi.configs.AppConfig;
+import org.main.unimapapi.entities.QueuedMail;
+import org.main.unimapapi.repository_queries.MailQueueRepository;
+import org.main.unimapapi.utils.ServerLogger;
+import org.main.unimapapi.utils.SmtpConnection;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.internet.AddressException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Delivery of queued emails (`mail_queue`)
+ *
+ * - one dedicated thread drains the queue in batches over a single reused SMTP connection
+ * - batches are claimed with a lease (see MailQueueRepository), so several instances never send the same row twice
+ * - it polls every MAIL_POLL_INTERVAL_MS and is woken up right away when a mail is queued
+ * - a failed attempt is retried with exponential backoff, after MAIL_MAX_ATTEMPTS the mail is marked FAILED
+ * - rejected addresses are not retried
+ */
+@Service
+public class MailDispatcher {
+    private static final long BASE_BACKOFF_MS = 5_000;
+    private static final long MAX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(10);
+    // Longer than a batch can take (SMTP timeouts are 10 s per message)
+    private static final long CLAIM_LEASE_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private final MailQueueRepository mailQueueRepository;
+    private final SmtpConnection smtpConnection = new SmtpConnection();
+    private final int batchSize = AppConfig.getMailBatchSize();
+    private final int maxAttempts = AppConfig.getMailMaxAttempts();
+
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder sendNanos = new LongAdder();
+    private volatile long lastSendMillis;
+    private volatile long queueDepth;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mail-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public record Stats(long queueDepth, long sent, long retried, long failed,
+                        long lastSendMillis, double averageSendMillis) {
+    }
+
+    public MailDispatcher(MailQueueRepository mailQueueRepository) {
+        this.mailQueueRepository = mailQueueRepository;
+        long interval = AppConfig.getMailPollIntervalMs();
+        executor.scheduleWithFixedDelay(this::drain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // Asks the dispatcher thread to look at the queue now instead of at the next poll
+    public void wakeUp() {
+        if (wakeUpPending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                wakeUpPending.set(false);
+                drain();
+            });
+        }
+    }
+
+    public Stats getStats() {
+        long count = sent.sum();
+        double average = count == 0 ? 0 : sendNanos.sum() / 1_000_000.0 / count;
+        return new Stats(queueDepth, count, retried.sum(), failed.sum(), lastSendMillis, average);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        smtpConnection.close();
+    }
+
+    // Runs on the dispatcher thread only
+    private void drain() {
+        try {
+            List<QueuedMail> batch;
+            do {
+                batch = mailQueueRepository.claimDue(batchSize, CLAIM_LEASE_MS);
+                if (!batch.isEmpty() && !sendBatch(batch)) {
+                    break;
+                }
+            } while (batch.size() == batchSize);
+
+            queueDepth = mailQueueRepository.countPending();
+            smtpConnection.closeIfIdle();
+        } catch (Exception e) {
+            ServerLogger.logServer(ServerLogger.Level.ERROR, "Mail dispatcher failed: " + e.getMessage());
+        }
+    }
+
+    // Sends one claimed batch, returns false when the SMTP server is unreachable and the rest should wait
+    private boolean sendBatch(List<QueuedMail> batch) {
+        List<Long> delivered = new ArrayList<>(batch.size());
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                QueuedMail mail = batch.get(i);
+                long start = System.nanoTime();
+                try {
+                    smtpConnection.send(mail.getRecipient(), mail.getSubject(), mail.getBody());
+                    long elapsed = System.nanoTime() - start;
+                    sendNanos.add(elapsed);
+                    lastSendMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+                    sent.increment();
+                    delivered.add(mail.getId());
+                } catch (AddressException | SendFailedException e) {
+                    // The address itself is rejected, another attempt would fail the same way
+                    giveUp(mail, mail.getAttempts() + 1, e);
+                } catch (MessagingException e) {
+                    retryLater(mail, e);
+                    releaseRest(batch, i + 1);
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            if (!delivered.isEmpty()) {
+                mailQueueRepository.deleteDelivered(delivered);
+            }
+        }
+    }
+
+    private void releaseRest(List<QueuedMail> batch, int from) {
+        List<Long> ids = new ArrayList<>(batch.size() - from);
+        for (QueuedMail mail : batch.subList(from, batch.size())) {
+            ids.add(mail.getId());
+        }
+        if (!ids.isEmpty()) {
+            mailQueueRepository.releaseClaims(ids);
+        }
+    }
+
+    private void retryLater(QueuedMail mail, MessagingException e) {
+        int attempts = mail.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            giveUp(mail, attempts, e);
+            return;
+        }
+        long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempts - 1, 20));
+        mailQueueRepository.reschedule(mail.getId(), attempts, new Timestamp(System.currentTimeMillis() + backoff), e.getMessage());
+        retried.increment();
+        ServerLogger.logServer(ServerLogger.Level.WARNING, String.format("Sending mail to %s failed (attempt %d), retrying in %d s: %s",
+                mail.getRecipient(), attempts, backoff / 1000, e.getMessage()));
+    }
+
+    private void giveUp(QueuedMail mail, int attempts, MessagingException e) {
+        mailQueueRepository.markFailed(mail.getId(), attempts, e.getMessage());
+        failed.increment();
+        ServerLogger.logServer(ServerLogger.Level.ERROR, String.format("Failed to send mail to %s after %d attempt(s): %s",
+                mail.getRecipient(), attempts, e.getMessage()));
+    }
+}
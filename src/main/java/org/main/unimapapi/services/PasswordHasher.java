@@ -0,0 +1,124 @@
+package org.main.unimapapi.services;
+
+import org.main.unimapapi.configs.AppConfig;
+import org.main.unimapapi.utils.Hashing;
+import org.main.unimapapi.utils.ServerLogger;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/*
+ * Password hashing and verification (BCrypt) on a dedicated CPU pool
+ *
+ * - BCrypt is deliberately slow, so it does not run on servlet threads directly:
+ *   at most one hash per core runs at a time and a short queue absorbs bursts
+ * - when the queue is full the call fails at once with RejectedExecutionException,
+ *   callers answer 503 instead of tying up request threads behind the backlog
+ * - hashes stored with another cost than BCRYPT_COST are re-hashed after a successful login
+ */
+@Service
+public class PasswordHasher {
+    private final int cost = AppConfig.getBcryptCost();
+    private final long timeoutMs = AppConfig.getPasswordHashTimeoutMs();
+
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder hashed = new LongAdder();
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder rehashed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public record Stats(int cost, long hashed, long verified, long rehashed, long rejected, int active, int queued, int workers) {
+    }
+
+    public PasswordHasher() {
+        int workers = AppConfig.getPasswordHashWorkers();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(AppConfig.getPasswordHashQueueCapacity()), runnable -> {
+            Thread thread = new Thread(runnable, "password-hasher-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Hash of a new password with the configured cost
+    public String hash(String password) {
+        String hash = run(() -> Hashing.hashPassword(password, cost));
+        hashed.increment();
+        return hash;
+    }
+
+    public boolean verify(String password, String hashedPassword) {
+        boolean matches = run(() -> Hashing.checkPassword(password, hashedPassword));
+        verified.increment();
+        return matches;
+    }
+
+    public boolean needsRehash(String hashedPassword) {
+        return Hashing.costOf(hashedPassword) != cost;
+    }
+
+    /*
+     * Re-hashes a verified password with the configured cost in the background and hands the new hash to `store`
+     * Skipped when the pool is busy, the next login tries again
+     */
+    public void rehashLater(String password, Consumer<String> store) {
+        try {
+            executor.execute(() -> {
+                try {
+                    store.accept(Hashing.hashPassword(password, cost));
+                    rehashed.increment();
+                } catch (Exception e) {
+                    ServerLogger.logServer(ServerLogger.Level.WARNING, "Password re-hash failed: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(cost, hashed.sum(), verified.sum(), rehashed.sum(), rejected.sum(),
+                executor.getActiveCount(), executor.getQueue().size(), executor.getMaximumPoolSize());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new RejectedExecutionException("Password hashing timed out after " + timeoutMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new RejectedExecutionException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
@@ -7,16 +7,35 @@ import org.main.unimapapi.repository_queries.UserRepository;
 import org.main.unimapapi.utils.ServerLogger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.Base64;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class RegistrationService {
+    /*
+     * Result of a registration: the created user, or the fields that are already taken ("login", "email")
+     */
+    public record Registration(User user, List<String> conflicts) {
+        public boolean isCreated() {
+            return user != null;
+        }
+    }
+
     private final UserRepository userRepository;
+    private final AvatarService avatarService;
+    private final TransactionTemplate transactionTemplate;
 
 
-    public User register(User_dto dto) {
+    /*
+     * Creates the user with a single INSERT ... ON CONFLICT DO NOTHING
+     * Only when it inserts nothing, one more query finds out which field conflicted
+     * The avatar is stored in the same transaction, a rejected registration rolls it back and leaves no image behind
+     */
+    public Registration register(User_dto dto) {
         try {
             User user = User.builder()
                     .username(dto.getUsername())
@@ -25,15 +44,31 @@ public class RegistrationService {
                     .password(dto.getPassword())
                     .isAdmin(dto.isAdmin())
                     .isPremium(dto.isPremium())
-                    .avatar(dto.getAvatarBinary() != null ? Base64.getDecoder().decode(dto.getAvatarBinary()) : null)
                     .avatarFileName(dto.getAvatarFileName())
                     .build();
 
-            userRepository.save(user);
-            return user;
+            boolean created = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (dto.getAvatarBinary() != null) {
+                    user.setAvatarHash(avatarService.store(Base64.getDecoder().decode(dto.getAvatarBinary())));
+                }
+                if (userRepository.save(user)) {
+                    return true;
+                }
+                status.setRollbackOnly();
+                return false;
+            }));
+            if (created) {
+                return new Registration(user, List.of());
+            }
+            List<String> conflicts = userRepository.findTakenFields(dto.getLogin(), dto.getEmail());
+            // The conflicting row may have been deleted in the meantime, report the login then
+            return new Registration(null, conflicts.isEmpty() ? List.of("login") : conflicts);
+        } catch (ResponseStatusException e) {
+            // Rejected avatar, nothing was stored
+            throw e;
         } catch (Exception e) {
             ServerLogger.logServer(ServerLogger.Level.ERROR, "Error during user registration: " + e.getMessage());
             throw new RuntimeException("Error during user registration: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+}
@@ -2,20 +2,34 @@ package org.main.unimapapi.services;
 
 import lombok.RequiredArgsConstructor;
 import org.main.unimapapi.entities.User;
+import org.main.unimapapi.repository_queries.UserRepository;
 import org.main.unimapapi.utils.JwtToken;
+import org.main.unimapapi.utils.VerifiedToken;
 import org.springframework.stereotype.Service;
 
+import java.util.Optional;
+
 @Service
 @RequiredArgsConstructor
 public class TokenService {
     private final JwtToken jwtToken;
+    private final UserRepository userRepository;
 
     public String createAccessToken(User user) {
-        return createAccessToken(user.getLogin());
+        return jwtToken.generateAccessToken(user.getLogin(), user.getId(), user.isAdmin());
     }
 
-    public String createAccessToken(String login) {
-        return jwtToken.generateAccessToken(login);
+    /*
+     * New access token for the owner of a valid refresh token, empty if that user no longer exists
+     * The user is read again, so a removed admin flag (or account) takes effect at the next refresh;
+     * refresh tokens from before the id claim are matched by their login
+     */
+    public Optional<String> refreshAccessToken(String refreshToken) {
+        VerifiedToken verified = jwtToken.verifyRefreshToken(refreshToken);
+        Optional<User> user = verified.userId() != null
+                ? userRepository.findById(verified.userId())
+                : userRepository.findByLogin(verified.subject());
+        return user.map(this::createAccessToken);
     }
 
     public boolean validateAccessToken(String accessToken, User user) {
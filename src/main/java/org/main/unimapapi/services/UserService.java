@@ -5,10 +5,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.main.unimapapi.dtos.User_dto;
 import org.main.unimapapi.entities.User;
 import org.main.unimapapi.repository_queries.UserRepository;
-import org.main.unimapapi.utils.Hashing;
 import org.main.unimapapi.utils.ServerLogger;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,7 +18,12 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class UserService {
     private final UserRepository userRepository;
+    private final AvatarService avatarService;
+    private final PasswordHasher passwordHasher;
+    private final CommentService commentService;
 
+    // One transaction: the stored avatar stays locked until the user points to it
+    @Transactional
     public User create(User_dto dto) {
         User user = User.builder()
                 .login(dto.getLogin())
@@ -25,7 +32,7 @@ public class UserService {
                 .username(dto.getUsername())
                 .isAdmin(dto.isAdmin())
                 .isPremium(dto.isPremium())
-                .avatar(dto.getAvatarBinary() != null ? dto.getAvatarBinary().getBytes() : null)
+                .avatarHash(dto.getAvatarBinary() != null ? avatarService.store(dto.getAvatarBinary().getBytes()) : null)
                 .avatarFileName(dto.getAvatarFileName())
                 .build();
 
@@ -59,21 +66,26 @@ public class UserService {
     }
 
     public void deleteAllUserInfo(Long id) {
-        userRepository.deleteAllUserInfo(id);
+        // Comments through CommentService, so the rating aggregates follow; one transaction with the account
+        String avatarHash = commentService.deleteAllUserComments(id, () -> userRepository.deleteAllUserInfo(id));
+        avatarService.release(avatarHash);
     }
 
     public void deleteAllUserComments(Long id) {
-        userRepository.deleteAllUserComments(id);
+        commentService.deleteAllUserComments(id);
     }
 
-    public boolean updateAvatarData(String login, byte[] avatarBinary, String fileName) {
-        return updateUserProperty(login, user -> {
-            user.setAvatar(avatarBinary);
-            user.setAvatarFileName(fileName);
-            ServerLogger.logServer(ServerLogger.Level.INFO, "Avatar updated successfully for user: " + login);
-        });
+    // Streams the uploaded image into the avatar store, throws ResponseStatusException for a rejected upload
+    public boolean updateAvatarData(String login, InputStream avatarStream, String fileName) throws IOException {
+        if (!avatarService.updateAvatar(login, avatarStream, fileName)) {
+            ServerLogger.logServer(ServerLogger.Level.WARNING, "User not found!");
+            return false;
+        }
+        ServerLogger.logServer(ServerLogger.Level.INFO, "Avatar updated successfully for user: " + login);
+        return true;
     }
 
+
     public boolean changeEmail(String login, String newEmail) {
         return updateUserProperty(login, user -> user.setEmail(newEmail));
     }
@@ -81,7 +93,7 @@ public class UserService {
     public boolean changePassword(String email, String newPassword) {
         return userRepository.findByEmail(email)
                 .map(user -> {
-                    user.setPassword(Hashing.hashPassword(newPassword));
+                    user.setPassword(passwordHasher.hash(newPassword));
                     userRepository.update(user);
                     return true;
                 })
@@ -0,0 +1,231 @@
+package org.main.unimapapi.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Append-only log writer with one dedicated thread per log file
+ *
+ * Request threads only serialize their record and push it into a LogRingBuffer
+ * The writer thread drains the ring in batches and appends the bytes to the active segment
+ * of a LogSegmentStore, so a log call never parses or rewrites the file and never takes a global lock
+ */
+public class AsyncLogWriter {
+    // How long the writer sleeps when the ring is empty
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    // How many times a producer retries a full ring before it drops the record
+    private static final int FULL_RETRIES = 16;
+    private static final int BATCH_BYTES = 256 * 1024;
+
+    private final String filePath;
+    private final LogSegmentStore store;
+    private final LogRingBuffer ring;
+    private final Thread writerThread;
+    private final ByteBuffer batchBuffer = ByteBuffer.allocateDirect(BATCH_BYTES);
+
+    private volatile boolean running = true;
+    private volatile boolean idle;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder backpressureEvents = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder writeErrors = new LongAdder();
+    private final LongAdder rolls = new LongAdder();
+
+    public record Stats(long enqueued, long written, long dropped, long backpressureEvents,
+                        long batches, long writeErrors, int queueDepth, int capacity,
+                        long rolls, int sealedSegments, long activeSegmentBytes) {
+    }
+
+    public AsyncLogWriter(String filePath, int capacity, LogSegmentStore store) {
+        this.filePath = filePath;
+        this.store = store;
+        this.ring = new LogRingBuffer(capacity);
+        this.writerThread = new Thread(this::runWriter, "log-writer-" + Path.of(filePath).getFileName());
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    // Enqueues one record; under sustained overload the record is dropped instead of blocking the caller
+    public boolean append(LogRecord record) {
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+        if (ring.offer(record)) {
+            enqueued.increment();
+            wakeWriter();
+            return true;
+        }
+
+        backpressureEvents.increment();
+        for (int attempt = 0; attempt < FULL_RETRIES; attempt++) {
+            wakeWriter();
+            Thread.onSpinWait();
+            if (ring.offer(record)) {
+                enqueued.increment();
+                return true;
+            }
+            Thread.yield();
+        }
+        dropped.increment();
+        return false;
+    }
+
+    /*
+     * Enqueues a whole batch with one claim on the ring
+     * If the ring has no room for all of them the records fall back to one-by-one append,
+     * returns how many records were accepted
+     */
+    public int appendBatch(LogRecord[] records, int count) {
+        if (!running) {
+            dropped.add(count);
+            return 0;
+        }
+        for (int attempt = 0; attempt <= FULL_RETRIES; attempt++) {
+            if (ring.offerBatch(records, count)) {
+                enqueued.add(count);
+                wakeWriter();
+                return count;
+            }
+            if (attempt == 0) {
+                backpressureEvents.increment();
+            }
+            wakeWriter();
+            Thread.yield();
+        }
+
+        int accepted = 0;
+        for (int i = 0; i < count; i++) {
+            if (append(records[i])) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    public Stats getStats() {
+        return new Stats(enqueued.sum(), written.sum(), dropped.sum(), backpressureEvents.sum(),
+                batches.sum(), writeErrors.sum(), ring.size(), ring.capacity(),
+                rolls.sum(), store.getSegmentCount(), store.getActiveBytes());
+    }
+
+    // Sealed segments overlapping the time range and holding records of at least minLevel
+    public List<LogSegmentInfo> findSegments(long from, long to, ServerLogger.Level minLevel) {
+        return store.findSegments(from, to, minLevel);
+    }
+
+    // Flushes everything that is still queued and closes the active segment
+    public void close() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void wakeWriter() {
+        if (idle) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    private void runWriter() {
+        openStore();
+        if (!running) {
+            return;
+        }
+
+        while (running || !ring.isEmpty()) {
+            if (drainBatch() == 0) {
+                idle = true;
+                // Re-check after publishing the idle flag, so a producer's wake-up is not lost
+                if (ring.isEmpty() && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+            }
+        }
+
+        store.close();
+    }
+
+    // Copies up to BATCH_BYTES of records into one buffer and writes them with a single call
+    private int drainBatch() {
+        int count = 0;
+        batchBuffer.clear();
+        LogRecord record;
+        while ((record = ring.poll()) != null) {
+            byte[] payload = record.payload();
+            if (store.needsRoll(record, batchBuffer.position())) {
+                flushBuffer();
+                rollSegment();
+            }
+            store.account(record);
+            if (payload.length > batchBuffer.remaining()) {
+                flushBuffer();
+                if (payload.length > batchBuffer.capacity()) {
+                    writeFully(ByteBuffer.wrap(payload));
+                    count++;
+                    continue;
+                }
+            }
+            batchBuffer.put(payload);
+            count++;
+            if (!batchBuffer.hasRemaining()) {
+                break;
+            }
+        }
+        flushBuffer();
+        if (count > 0) {
+            written.add(count);
+            batches.increment();
+        }
+        return count;
+    }
+
+    private void flushBuffer() {
+        batchBuffer.flip();
+        if (batchBuffer.hasRemaining()) {
+            writeFully(batchBuffer);
+        }
+        batchBuffer.clear();
+    }
+
+    private void rollSegment() {
+        try {
+            store.roll();
+            rolls.increment();
+        } catch (IOException e) {
+            writeErrors.increment();
+            System.err.println("SERVER LOGGING ERROR: cannot roll " + filePath + ": " + e.getMessage());
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) {
+        try {
+            store.write(buffer);
+        } catch (IOException e) {
+            writeErrors.increment();
+            System.err.println("SERVER LOGGING ERROR: " + e.getMessage());
+        }
+    }
+
+    private void openStore() {
+        try {
+            store.open();
+        } catch (IOException e) {
+            System.err.println("SERVER LOGGING ERROR: cannot open log segments of " + filePath + ": " + e.getMessage());
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.main.unimapapi.utils.DDOSProtection;
+
+import org.main.unimapapi.configs.AppConfig;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/*
+ * Rate limiting engine: one token bucket per (route group, client IP)
+ *
+ * A bucket is a single AtomicLong, updated with a CAS loop, so checking a request
+ * takes no lock:
+ * - upper 40 bits: time of the last refill in ms (relative to the limiter start)
+ * - lower 24 bits: available tokens in thousandths of a token
+ *
+ * Memory is bounded:
+ * - buckets idle for longer than IDLE_EVICTION_MS are removed by a periodic sweep
+ * - over MAX_BUCKETS, new clients of a group share one overflow bucket of that group
+ */
+@Component
+public class TokenBucketRateLimiter {
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long ONE_TOKEN = 1000;
+
+    private static final long IDLE_EVICTION_MS = TimeUnit.MINUTES.toMillis(5);
+    static final int MAX_BUCKETS = 100_000;
+
+    // Route groups with their own limits
+    public enum RouteGroup {
+        AUTH(10, 1),
+        RESOURCES(20, 5),
+        COMMENTS(20, 5),
+        LOG(30, 10),
+        DEFAULT(30, 10);
+
+        private final int defaultBurst;
+        private final double defaultPerSecond;
+
+        RouteGroup(int defaultBurst, double defaultPerSecond) {
+            this.defaultBurst = defaultBurst;
+            this.defaultPerSecond = defaultPerSecond;
+        }
+
+        public static RouteGroup of(String path) {
+            String route = path.startsWith("/api/unimap_pc") ? path.substring("/api/unimap_pc".length()) : path;
+            if (route.startsWith("/authenticate") || route.startsWith("/register") || route.startsWith("/refresh")
+                    || route.startsWith("/user/email") || route.startsWith("/change_pass")) {
+                return AUTH;
+            }
+            if (route.startsWith("/resources")) {
+                return RESOURCES;
+            }
+            if (route.startsWith("/comments")) {
+                return COMMENTS;
+            }
+            if (route.startsWith("/log")) {
+                return LOG;
+            }
+            return DEFAULT;
+        }
+    }
+
+    // capacity in thousandths of a token
+    record Limit(long capacity, double perSecond) {
+        static Limit of(int burst, double perSecond) {
+            return new Limit(Math.min(burst * ONE_TOKEN, TOKEN_MASK), perSecond);
+        }
+    }
+
+    private record BucketKey(RouteGroup group, String client) {
+    }
+
+    public record Stats(long allowed, long rejected, long evicted, long overflowed, int buckets) {
+    }
+
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+    private final Map<RouteGroup, Limit> limits = new EnumMap<>(RouteGroup.class);
+    private final Map<RouteGroup, AtomicLong> overflowBuckets = new EnumMap<>(RouteGroup.class);
+    private final ConcurrentHashMap<BucketKey, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+
+    private final ScheduledExecutorService evictionScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rate-limiter-eviction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TokenBucketRateLimiter() {
+        this(configuredLimits(), System::nanoTime);
+    }
+
+    // Limits of every route group and the time source given directly (tests)
+    TokenBucketRateLimiter(Map<RouteGroup, Limit> groupLimits, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+        for (RouteGroup group : RouteGroup.values()) {
+            Limit limit = groupLimits.get(group);
+            limits.put(group, limit);
+            overflowBuckets.put(group, newBucket(limit));
+        }
+        evictionScheduler.scheduleAtFixedRate(this::evictIdleBuckets, 1, 1, TimeUnit.MINUTES);
+    }
+
+    private static Map<RouteGroup, Limit> configuredLimits() {
+        Map<RouteGroup, Limit> configured = new EnumMap<>(RouteGroup.class);
+        for (RouteGroup group : RouteGroup.values()) {
+            int burst = AppConfig.getRateLimitBurst(group.name(), group.defaultBurst);
+            double perSecond = AppConfig.getRateLimitPerSecond(group.name(), group.defaultPerSecond);
+            configured.put(group, Limit.of(burst, perSecond));
+        }
+        return configured;
+    }
+
+    /*
+     * Takes one token from the client's bucket of the group
+     * Returns 0 if the request may pass, otherwise the number of ms until a token is available
+     */
+    public long tryAcquire(RouteGroup group, String client) {
+        Limit limit = limits.get(group);
+        AtomicLong bucket = findBucket(group, client, limit);
+        long now = nowMillis();
+
+        while (true) {
+            long state = bucket.get();
+            long tokens = refill(state, now, limit);
+
+            if (tokens < ONE_TOKEN) {
+                rejected.increment();
+                return (long) Math.ceil((ONE_TOKEN - tokens) / Math.max(limit.perSecond(), 0.001));
+            }
+            if (bucket.compareAndSet(state, pack(now, tokens - ONE_TOKEN))) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(allowed.sum(), rejected.sum(), evicted.sum(), overflowed.sum(), buckets.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictionScheduler.shutdown();
+    }
+
+    private AtomicLong findBucket(RouteGroup group, String client, Limit limit) {
+        BucketKey key = new BucketKey(group, client);
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= MAX_BUCKETS) {
+            overflowed.increment();
+            return overflowBuckets.get(group);
+        }
+        return buckets.computeIfAbsent(key, k -> newBucket(limit));
+    }
+
+    private AtomicLong newBucket(Limit limit) {
+        return new AtomicLong(pack(nowMillis(), limit.capacity()));
+    }
+
+    // Tokens available at time now: stored tokens plus what was refilled since the last update
+    private static long refill(long state, long now, Limit limit) {
+        long elapsed = Math.max(0, now - (state >>> TOKEN_BITS));
+        long tokens = (state & TOKEN_MASK) + (long) (elapsed * limit.perSecond());
+        return Math.min(tokens, limit.capacity());
+    }
+
+    private static long pack(long millis, long tokens) {
+        return (millis << TOKEN_BITS) | tokens;
+    }
+
+    private long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanoClock.getAsLong() - startNanos);
+    }
+
+    // An idle bucket is full again anyway, so dropping it does not change any decision
+    private void evictIdleBuckets() {
+        long now = nowMillis();
+        buckets.entrySet().removeIf(entry -> {
+            boolean idle = now - (entry.getValue().get() >>> TOKEN_BITS) > IDLE_EVICTION_MS;
+            if (idle) {
+                evicted.increment();
+            }
+            return idle;
+        });
+    }
+}
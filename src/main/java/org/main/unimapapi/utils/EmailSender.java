@@ -1,72 +1,46 @@
 package org.main.unimapapi.utils;
 
 import lombok.RequiredArgsConstructor;
-import org.main.unimapapi.configs.AppConfig;
-import org.springframework.scheduling.annotation.Async;
+import org.main.unimapapi.repository_queries.MailQueueRepository;
+import org.main.unimapapi.services.MailDispatcher;
 import org.springframework.stereotype.Service;
-
-import javax.mail.Message;
-import javax.mail.MessagingException;
-import javax.mail.PasswordAuthentication;
-import javax.mail.Session;
-import javax.mail.Transport;
-import javax.mail.internet.InternetAddress;
-import javax.mail.internet.MimeMessage;
-import java.util.Properties;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
- * Service for sending emails asynchronously
+ * Service for sending emails
+ *
+ * Messages are only written to the persistent queue (`mail_queue`) here,
+ * the SMTP delivery happens on the MailDispatcher thread
+ * Inside a transaction the row is part of it (outbox), the dispatcher is woken up after the commit
  */
 @Service
 @RequiredArgsConstructor
 public class EmailSender {
+    private final MailQueueRepository mailQueueRepository;
+    private final MailDispatcher mailDispatcher;
 
-    @Async
     public void sendVerificationCode(String recipient, String code) {
-        String sender = AppConfig.getSender();
-        String host = AppConfig.getHost();
-        String port = AppConfig.getPort();
-        String password = AppConfig.getPassword();
-
-        Properties properties = createMailProperties(host, port);
-        Session session = createMailSession(sender, password, properties);
-
-        try {
-            MimeMessage message = createMessage(session, sender, recipient, code);
-            Transport.send(message);
-            ServerLogger.logServer(ServerLogger.Level.INFO, String.format("Verification code sent to %s", recipient));
-        } catch (MessagingException mex) {
-            ServerLogger.logServer(ServerLogger.Level.ERROR, String.format("Failed to send verification code to %s: %s", recipient, mex.getMessage()));
-        }
-    }
-
-    private Properties createMailProperties(String host, String port) {
-        Properties properties = new Properties();
-        properties.setProperty("mail.smtp.host", host);
-        properties.setProperty("mail.smtp.port", port);
-        properties.setProperty("mail.smtp.auth", "true");
-        properties.setProperty("mail.smtp.starttls.enable", "true");
-        return properties;
+        mailQueueRepository.enqueue(recipient, "UniMap Confirmation Code", createVerificationBody(code));
+        wakeUpDispatcher();
+        ServerLogger.logServer(ServerLogger.Level.INFO, String.format("Verification code queued for %s", recipient));
     }
 
-    private Session createMailSession(String sender, String password, Properties properties) {
-        return Session.getInstance(properties, new javax.mail.Authenticator() {
+    private void wakeUpDispatcher() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            mailDispatcher.wakeUp();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
-            protected PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication(sender, password);
+            public void afterCommit() {
+                mailDispatcher.wakeUp();
             }
         });
     }
 
-    private MimeMessage createMessage(Session session, String sender, String recipient, String code)
-            throws MessagingException {
-        MimeMessage message = new MimeMessage(session);
-
-        message.setFrom(new InternetAddress(sender));
-        message.addRecipient(Message.RecipientType.TO, new InternetAddress(recipient));
-        message.setSubject("UniMap Confirmation Code");
-
-        String emailBody = String.format(
+    private String createVerificationBody(String code) {
+        return String.format(
                 """
                         Hi, your confirmation code is: %s
                         
@@ -74,8 +48,5 @@ public class EmailSender {
                         
                         Best regards, UniMap Team""",
                 code);
-
-        message.setText(emailBody);
-        return message;
     }
-}
\ No newline at end of file
+}
@@ -2,19 +2,39 @@ package org.main.unimapapi.utils;
 
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import org.main.unimapapi.configs.AppConfig;
 import org.mindrot.jbcrypt.BCrypt;
 import org.springframework.stereotype.Component;
 
+/*
+ * BCrypt primitives, they run on the calling thread
+ * Request handling goes through PasswordHasher, which runs them on its own bounded pool
+ */
 @Component
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class Hashing {
-    private static final int DEFAULT_SALT_ROUNDS = 12;
-
     public static String hashPassword(String password) {
-        return BCrypt.hashpw(password, BCrypt.gensalt(DEFAULT_SALT_ROUNDS));
+        return hashPassword(password, AppConfig.getBcryptCost());
+    }
+
+    public static String hashPassword(String password, int cost) {
+        return BCrypt.hashpw(password, BCrypt.gensalt(cost));
     }
 
     public static boolean checkPassword(String plainPassword, String hashedPassword) {
         return BCrypt.checkpw(plainPassword, hashedPassword);
     }
-}
\ No newline at end of file
+
+    // Cost factor stored in a hash ("$2a$12$..." -> 12), -1 if the hash is not a BCrypt hash
+    public static int costOf(String hashedPassword) {
+        if (hashedPassword == null || hashedPassword.length() < 7 || hashedPassword.charAt(0) != '$') {
+            return -1;
+        }
+        int costStart = hashedPassword.indexOf('$', 1) + 1;
+        try {
+            return Integer.parseInt(hashedPassword.substring(costStart, costStart + 2));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.main.unimapapi.utils;
+
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.main.unimapapi.dtos.AuthenticatedUser;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/*
+ * Verifies the "Authorization: Bearer <access token>" header once per request
+ *
+ * A valid token puts an AuthenticatedUser (login + user id) into the security context,
+ * controllers take it with @AuthenticationPrincipal instead of verifying the token again
+ * Requests without a valid token continue unauthenticated, the route rules decide what happens
+ *
+ * Registered in SecurityConfig, it is not a bean, so it does not run twice in the servlet chain
+ */
+@RequiredArgsConstructor
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private static final List<SimpleGrantedAuthority> USER_AUTHORITIES =
+            List.of(new SimpleGrantedAuthority("ROLE_USER"));
+    private static final List<SimpleGrantedAuthority> ADMIN_AUTHORITIES =
+            List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN"));
+
+    private final JwtToken jwtToken;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            String token = header.substring(BEARER_PREFIX.length()).trim();
+            try {
+                VerifiedToken verified = jwtToken.verifyAccessToken(token);
+                if (!verified.isExpired()) {
+                    AuthenticatedUser principal = new AuthenticatedUser(verified.userId(), verified.subject(), verified.admin());
+                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                            principal, null, verified.admin() ? ADMIN_AUTHORITIES : USER_AUTHORITIES);
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
+            } catch (JwtException | IllegalArgumentException e) {
+                ServerLogger.logServer(ServerLogger.Level.WARNING, "Invalid access token: " + e.getMessage());
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+}
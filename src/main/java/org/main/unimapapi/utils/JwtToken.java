@@ -2,11 +2,14 @@ package org.main.unimapapi.utils;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import java.security.Key;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import org.main.unimapapi.configs.AppConfig;
 import org.springframework.http.HttpStatus;
@@ -15,25 +18,47 @@ import org.springframework.web.server.ResponseStatusException;
 
 import javax.annotation.PostConstruct;
 
+/*
+ * Generation and verification of access / refresh JWTs
+ *
+ * Parsers are built once per key, and every successfully verified token is remembered
+ * in a VerifiedTokenCache until it expires, so repeated requests with the same token
+ * do not decode and HMAC-verify it again
+ */
 @Component
 @RequiredArgsConstructor
 public class JwtToken {
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String ADMIN_CLAIM = "adm";
+
     private final long EXPIRATION_TIME_ACCESS = AppConfig.getEXPIRATION_TIME_ACCESS();
     private final long EXPIRATION_TIME_REFRESH = AppConfig.getEXPIRATION_TIME_REFRESH();
 
     private Key accessSigningKey;
     private Key refreshSigningKey;
 
+    private JwtParser accessParser;
+    private JwtParser refreshParser;
+
+    private final VerifiedTokenCache accessTokenCache = new VerifiedTokenCache(AppConfig.getJwtCacheSize());
+    private final VerifiedTokenCache refreshTokenCache = new VerifiedTokenCache(AppConfig.getJwtCacheSize());
+
     @PostConstruct
     public void init() {
         accessSigningKey = Keys.hmacShaKeyFor(AppConfig.getAccessKey().getBytes());
         refreshSigningKey = Keys.hmacShaKeyFor(AppConfig.getRefreshKey().getBytes());
+
+        accessParser = Jwts.parserBuilder().setSigningKey(accessSigningKey).build();
+        refreshParser = Jwts.parserBuilder().setSigningKey(refreshSigningKey).build();
     }
 
 
-    public String generateAccessToken(String login) {
+    // Access token carrying the user id and admin flag, so requests can be authorised without a DB lookup
+    public String generateAccessToken(String login, Long userId, boolean admin) {
         return Jwts.builder()
                 .setSubject(login)
+                .claim(USER_ID_CLAIM, userId)
+                .claim(ADMIN_CLAIM, admin)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME_ACCESS))
                 .signWith(accessSigningKey, SignatureAlgorithm.HS256)
@@ -41,9 +66,11 @@ public class JwtToken {
     }
 
 
-    public String generateRefreshToken(String login) {
+    public String generateRefreshToken(String login, Long userId, boolean admin) {
         return Jwts.builder()
                 .setSubject(login)
+                .claim(USER_ID_CLAIM, userId)
+                .claim(ADMIN_CLAIM, admin)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME_REFRESH))
                 .signWith(refreshSigningKey, SignatureAlgorithm.HS256)
@@ -53,8 +80,8 @@ public class JwtToken {
 
     public String extractUsernameFromAccessToken(String token) {
         try {
-            return extractClaims(token, accessSigningKey).getSubject();
-        } catch (JwtException e) {
+            return verifyAccessToken(token).subject();
+        } catch (JwtException | IllegalArgumentException e) {
             ServerLogger.logServer(ServerLogger.Level.WARNING, "Invalid access token: " + e.getMessage());
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid access token");
         }
@@ -63,28 +90,47 @@ public class JwtToken {
 
     public String extractUsernameFromRefreshToken(String token) {
         try {
-            return extractClaims(token, refreshSigningKey).getSubject();
-        } catch (JwtException e) {
+            return verifyRefreshToken(token).subject();
+        } catch (JwtException | IllegalArgumentException e) {
             ServerLogger.logServer(ServerLogger.Level.WARNING, "Invalid refresh token: " + e.getMessage());
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid refresh token");
         }
     }
 
-    private Claims extractClaims(String token, Key key) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    // Verifies the access token (or takes it from the cache), throws JwtException if it is not valid
+    public VerifiedToken verifyAccessToken(String token) {
+        return verify(token, accessParser, accessTokenCache);
+    }
+
+    // Verifies the refresh token (or takes it from the cache), throws JwtException if it is not valid
+    public VerifiedToken verifyRefreshToken(String token) {
+        return verify(token, refreshParser, refreshTokenCache);
+    }
+
+    private VerifiedToken verify(String token, JwtParser parser, VerifiedTokenCache cache) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("Token is empty");
+        }
+        VerifiedToken cached = cache.get(token);
+        if (cached != null) {
+            return cached;
+        }
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+        Number userId = claims.get(USER_ID_CLAIM, Number.class);
+        boolean admin = Boolean.TRUE.equals(claims.get(ADMIN_CLAIM, Boolean.class));
+        VerifiedToken verified = new VerifiedToken(claims.getSubject(), userId != null ? userId.longValue() : null, admin, expiresAt);
+        cache.put(token, verified);
+        return verified;
     }
 
 
     public boolean validateAccessToken(String token, String username) {
         try {
-            Claims claims = extractClaims(token, accessSigningKey);
-            return claims.getSubject().equals(username) &&
-                    !claims.getExpiration().before(new Date());
-        } catch (JwtException e) {
+            VerifiedToken verified = verifyAccessToken(token);
+            return verified.subject().equals(username) && !verified.isExpired();
+        } catch (JwtException | IllegalArgumentException e) {
             ServerLogger.logServer(ServerLogger.Level.WARNING, "Error validating access token for user " + username + ": " + e.getMessage());
             return false;
         }
@@ -93,11 +139,8 @@ public class JwtToken {
 
     public boolean validateAccessToken(String token) {
         try {
-            String username = extractUsernameFromAccessToken(token);
-            Claims claims = extractClaims(token, accessSigningKey);
-            return claims.getSubject().equals(username) &&
-                    !claims.getExpiration().before(new Date());
-        } catch (JwtException e) {
+            return !verifyAccessToken(token).isExpired();
+        } catch (JwtException | IllegalArgumentException e) {
             ServerLogger.logServer(ServerLogger.Level.WARNING, "Error validating access token: " + e.getMessage());
             return false;
         }
@@ -106,10 +149,9 @@ public class JwtToken {
 
     public boolean validateRefreshToken(String token, String username) {
         try {
-            Claims claims = extractClaims(token, refreshSigningKey);
-            return claims.getSubject().equals(username) &&
-                    !claims.getExpiration().before(new Date());
-        } catch (JwtException e) {
+            VerifiedToken verified = verifyRefreshToken(token);
+            return verified.subject().equals(username) && !verified.isExpired();
+        } catch (JwtException | IllegalArgumentException e) {
             ServerLogger.logServer(ServerLogger.Level.WARNING, "Error validating refresh token for user " + username + ": " + e.getMessage());
             return false;
         }
@@ -117,6 +159,14 @@ public class JwtToken {
 
 
     public Date extractExpiration(String token) {
-        return extractClaims(token, refreshSigningKey).getExpiration();
+        return new Date(verifyRefreshToken(token).expiresAt());
+    }
+
+    // Hit / miss counters of the verified-token caches
+    public Map<String, VerifiedTokenCache.Stats> getCacheStats() {
+        Map<String, VerifiedTokenCache.Stats> stats = new LinkedHashMap<>();
+        stats.put("access", accessTokenCache.getStats());
+        stats.put("refresh", refreshTokenCache.getStats());
+        return stats;
     }
-}
\ No newline at end of file
+}
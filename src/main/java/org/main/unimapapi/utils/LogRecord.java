@@ -0,0 +1,10 @@
+package org.main.unimapapi.utils;
+
+/*
+ * One pre-serialized log record travelling from a request thread to the writer thread
+ *
+ * The payload is already encoded (XML fragment, UTF-8), so the writer only copies bytes
+ * Timestamp and level are kept next to it for bookkeeping on the writer side
+ */
+public record LogRecord(long timestamp, ServerLogger.Level level, byte[] payload) {
+}
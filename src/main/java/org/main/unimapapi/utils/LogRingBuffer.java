@@ -0,0 +1,119 @@
+package org.main.unimapapi.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Bounded lock-free ring buffer for log records
+ *
+ * Many producers (request threads) and exactly one consumer (the log writer thread)
+ * Every slot carries a sequence number, so producers only race on one CAS of the tail
+ * and never block each other or the consumer
+ *
+ * offer() never waits: if the ring is full it returns false and the caller decides
+ * whether to retry or drop the record
+ */
+public class LogRingBuffer {
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<LogRecord> slots;
+    private final AtomicLongArray sequences;
+
+    // Next position to be claimed by a producer
+    private final AtomicLong tail = new AtomicLong();
+    // Next position to be read by the consumer, written only by the writer thread
+    private final AtomicLong head = new AtomicLong();
+
+    public LogRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("Ring buffer capacity must be at least 2");
+        }
+        // Round up to the power of two, so the index is a simple mask
+        this.capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    // Adds one record, returns false if the ring is full
+    public boolean offer(LogRecord record) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots.lazySet(index, record);
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /*
+     * Adds count records with a single CAS on the tail
+     * Either all of them get a slot or none of them (returns false)
+     */
+    public boolean offerBatch(LogRecord[] records, int count) {
+        if (count <= 0) {
+            return true;
+        }
+        if (count > capacity) {
+            return false;
+        }
+        while (true) {
+            long pos = tail.get();
+            long last = pos + count - 1;
+            // The consumer frees slots in order, so if the last slot is free all before it are free too
+            long diff = sequences.get((int) (last & mask)) - last;
+            if (diff < 0) {
+                return false;
+            }
+            if (diff == 0 && tail.compareAndSet(pos, pos + count)) {
+                for (int i = 0; i < count; i++) {
+                    int index = (int) ((pos + i) & mask);
+                    slots.lazySet(index, records[i]);
+                    sequences.lazySet(index, pos + i + 1);
+                }
+                return true;
+            }
+        }
+    }
+
+    // Takes the oldest record, or null if nothing is published yet. Writer thread only
+    public LogRecord poll() {
+        long pos = head.get();
+        int index = (int) (pos & mask);
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        LogRecord record = slots.get(index);
+        slots.lazySet(index, null);
+        sequences.lazySet(index, pos + capacity);
+        head.lazySet(pos + 1);
+        return record;
+    }
+
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,24 @@
+package org.main.unimapapi.utils;
+
+/*
+ * Sidecar index entry describing one sealed (compressed) log segment
+ *
+ * from / to are epoch milliseconds of the first and the last record in the segment,
+ * so queries and retention can decide about the whole segment without opening it
+ */
+public record LogSegmentInfo(String file, long from, long to, long records, long bytes,
+                             long info, long warning, long error) {
+
+    public boolean overlaps(long rangeFrom, long rangeTo) {
+        return from <= rangeTo && to >= rangeFrom;
+    }
+
+    // Whether the segment holds at least one record of the given level or a more severe one
+    public boolean containsLevel(ServerLogger.Level minLevel) {
+        return switch (minLevel) {
+            case INFO -> records > 0;
+            case WARNING -> warning + error > 0;
+            case ERROR -> error > 0;
+        };
+    }
+}
@@ -0,0 +1,379 @@
+package org.main.unimapapi.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Rolling-segment storage of one log file
+ *
+ * The configured path (e.g. server_logs.xml) is always the active segment
+ * It is sealed and replaced by a fresh one when:
+ * - it grows over the configured size, or
+ * - the next record belongs to another day than the segment
+ *
+ * A sealed segment is renamed to <name>-<yyyyMMdd-HHmmss>.xml, gzip-compressed in the background
+ * and described by one line in the sidecar index <name>.index (time range + level counts)
+ * Retention and segment queries read only the index, they never open the segments themselves
+ *
+ * Writing (append / roll) is done only by the AsyncLogWriter thread
+ */
+public class LogSegmentStore {
+    private static final byte[] XML_HEADER =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n<logs>\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] XML_FOOTER = "</logs>\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final DateTimeFormatter SEGMENT_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Pattern TIMESTAMP_PATTERN = Pattern.compile("<timestamp>([^<]+)</timestamp>");
+    private static final Pattern LEVEL_PATTERN = Pattern.compile("<level>([A-Z]+)</level>");
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final Path activeFile;
+    private final Path directory;
+    private final String baseName;
+    private final String extension;
+    private final Path indexFile;
+    private final long maxSegmentBytes;
+    private final long retentionMillis;
+    private final int maxSegments;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<LogSegmentInfo> sealedSegments = new CopyOnWriteArrayList<>();
+    private final ExecutorService compressor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "log-segment-compressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private FileChannel channel;
+
+    // Statistics of the active segment
+    private LocalDate activeDay;
+    private long activeFrom = -1;
+    private long activeTo = -1;
+    private long activeBytes;
+    private final long[] activeLevelCounts = new long[ServerLogger.Level.values().length];
+
+    public LogSegmentStore(String filePath, long maxSegmentBytes, int retentionDays, int maxSegments) {
+        this.activeFile = Path.of(filePath).toAbsolutePath();
+        this.directory = activeFile.getParent();
+        String fileName = activeFile.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        this.baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        this.extension = dot > 0 ? fileName.substring(dot) : "";
+        this.indexFile = directory.resolve(baseName + ".index");
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.retentionMillis = TimeUnit.DAYS.toMillis(retentionDays);
+        this.maxSegments = maxSegments;
+    }
+
+    // Opens the active segment, loads the index and compresses segments left over by a crash
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        loadIndex();
+        recoverSealedSegments();
+        openActiveSegment();
+    }
+
+    // Whether the record has to go into a new segment
+    public boolean needsRoll(LogRecord record, int pendingBytes) {
+        if (activeFrom < 0) {
+            return false;
+        }
+        return activeBytes + pendingBytes + record.payload().length > maxSegmentBytes
+                || !dayOf(record.timestamp()).equals(activeDay);
+    }
+
+    // Bookkeeping for a record that is going to be written into the active segment
+    public void account(LogRecord record) {
+        if (activeFrom < 0) {
+            activeFrom = record.timestamp();
+            activeDay = dayOf(record.timestamp());
+        }
+        activeTo = Math.max(activeTo, record.timestamp());
+        activeLevelCounts[record.level().ordinal()]++;
+    }
+
+    public void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            activeBytes += channel.write(buffer);
+        }
+    }
+
+    // Seals the active segment and starts a new one. Compression runs in the background
+    public void roll() throws IOException {
+        closeActiveSegment();
+
+        Path sealed = nextSegmentPath(activeFrom);
+        Files.move(activeFile, sealed, StandardCopyOption.ATOMIC_MOVE);
+        LogSegmentInfo info = createInfo(sealed.getFileName().toString() + ".gz", activeFrom, activeTo, activeBytes, activeLevelCounts);
+
+        resetActiveStats();
+        openActiveSegment();
+
+        compressor.execute(() -> sealSegment(sealed, info));
+    }
+
+    public void close() {
+        try {
+            closeActiveSegment();
+        } catch (IOException e) {
+            System.err.println("SERVER LOGGING ERROR: " + e.getMessage());
+        }
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Sealed segments overlapping the time range and holding records of at least minLevel
+    public List<LogSegmentInfo> findSegments(long from, long to, ServerLogger.Level minLevel) {
+        List<LogSegmentInfo> result = new ArrayList<>();
+        for (LogSegmentInfo segment : sealedSegments) {
+            if (segment.overlaps(from, to) && segment.containsLevel(minLevel)) {
+                result.add(segment);
+            }
+        }
+        return result;
+    }
+
+    public int getSegmentCount() {
+        return sealedSegments.size();
+    }
+
+    public long getActiveBytes() {
+        return activeBytes;
+    }
+
+    private void openActiveSegment() throws IOException {
+        boolean exists = Files.exists(activeFile) && Files.size(activeFile) > 0;
+        channel = FileChannel.open(activeFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (!exists) {
+            channel.write(ByteBuffer.wrap(XML_HEADER));
+            activeBytes = channel.size();
+            return;
+        }
+
+        // Continue an existing segment: restore its statistics, then append after the last record
+        LogSegmentInfo existing = scanSegment(activeFile, activeFile.getFileName().toString());
+        activeFrom = existing.records() > 0 ? existing.from() : -1;
+        activeTo = existing.records() > 0 ? existing.to() : -1;
+        activeDay = activeFrom >= 0 ? dayOf(activeFrom) : null;
+        activeLevelCounts[ServerLogger.Level.INFO.ordinal()] = existing.info();
+        activeLevelCounts[ServerLogger.Level.WARNING.ordinal()] = existing.warning();
+        activeLevelCounts[ServerLogger.Level.ERROR.ordinal()] = existing.error();
+
+        long position = findFooterStart(channel.size());
+        channel.position(position);
+        activeBytes = position;
+    }
+
+    private void closeActiveSegment() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            return;
+        }
+        channel.write(ByteBuffer.wrap(XML_FOOTER));
+        channel.force(false);
+        channel.close();
+    }
+
+    // Returns the position of a trailing </logs> tag (cutting it off), or the end of the file if there is none
+    private long findFooterStart(long size) throws IOException {
+        int tailLength = (int) Math.min(size, 64);
+        ByteBuffer tail = ByteBuffer.allocate(tailLength);
+        channel.read(tail, size - tailLength);
+        String tailText = new String(tail.array(), 0, tail.position(), StandardCharsets.UTF_8);
+
+        int footer = tailText.lastIndexOf("</logs>");
+        if (footer < 0 || !tailText.substring(footer + "</logs>".length()).isBlank()) {
+            return size;
+        }
+        long position = size - tail.position() + tailText.substring(0, footer).getBytes(StandardCharsets.UTF_8).length;
+        channel.truncate(position);
+        return position;
+    }
+
+    private void resetActiveStats() {
+        activeFrom = -1;
+        activeTo = -1;
+        activeDay = null;
+        activeBytes = 0;
+        Arrays.fill(activeLevelCounts, 0);
+    }
+
+    private Path nextSegmentPath(long from) {
+        long start = from >= 0 ? from : System.currentTimeMillis();
+        String stamp = SEGMENT_NAME_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(start), ZONE));
+        Path candidate = directory.resolve(baseName + "-" + stamp + extension);
+        for (int i = 1; Files.exists(candidate) || Files.exists(Path.of(candidate + ".gz")); i++) {
+            candidate = directory.resolve(baseName + "-" + stamp + "-" + i + extension);
+        }
+        return candidate;
+    }
+
+    // Compresses a sealed segment, adds it to the index and applies retention. Compressor thread only
+    private void sealSegment(Path sealed, LogSegmentInfo info) {
+        try {
+            Path compressed = Path.of(sealed + ".gz");
+            try (InputStream in = Files.newInputStream(sealed);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed), 64 * 1024)) {
+                in.transferTo(out);
+            }
+            Files.delete(sealed);
+
+            sealedSegments.add(info);
+            Files.writeString(indexFile, objectMapper.writeValueAsString(info) + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+            applyRetention();
+        } catch (IOException e) {
+            System.err.println("SERVER LOGGING ERROR: cannot seal segment " + sealed + ": " + e.getMessage());
+        }
+    }
+
+    // Drops segments that are too old or over the segment limit, deciding only from the index
+    private void applyRetention() throws IOException {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        List<LogSegmentInfo> ordered = new ArrayList<>(sealedSegments);
+        ordered.sort(Comparator.comparingLong(LogSegmentInfo::to));
+
+        List<LogSegmentInfo> expired = new ArrayList<>();
+        int overLimit = ordered.size() - maxSegments;
+        for (int i = 0; i < ordered.size(); i++) {
+            LogSegmentInfo segment = ordered.get(i);
+            if (segment.to() < cutoff || i < overLimit) {
+                expired.add(segment);
+            }
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        for (LogSegmentInfo segment : expired) {
+            Files.deleteIfExists(directory.resolve(segment.file()));
+        }
+        sealedSegments.removeAll(expired);
+        rewriteIndex();
+    }
+
+    private void rewriteIndex() throws IOException {
+        Path temporary = directory.resolve(baseName + ".index.tmp");
+        StringBuilder content = new StringBuilder();
+        for (LogSegmentInfo segment : sealedSegments) {
+            content.append(objectMapper.writeValueAsString(segment)).append('\n');
+        }
+        Files.writeString(temporary, content, StandardCharsets.UTF_8);
+        Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void loadIndex() throws IOException {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                LogSegmentInfo info = objectMapper.readValue(line, LogSegmentInfo.class);
+                if (Files.exists(directory.resolve(info.file()))) {
+                    sealedSegments.add(info);
+                }
+            }
+        }
+    }
+
+    // Segments that were renamed but not compressed before the previous shutdown
+    private void recoverSealedSegments() throws IOException {
+        String pattern = baseName + "-*" + extension;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, pattern)) {
+            for (Path sealed : stream) {
+                LogSegmentInfo info = scanSegment(sealed, sealed.getFileName().toString() + ".gz");
+                compressor.execute(() -> sealSegment(sealed, info));
+            }
+        }
+    }
+
+    // Builds segment statistics by reading an uncompressed segment once
+    private LogSegmentInfo scanSegment(Path segment, String indexName) throws IOException {
+        long from = -1;
+        long to = -1;
+        long[] levelCounts = new long[ServerLogger.Level.values().length];
+
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher timestamp = TIMESTAMP_PATTERN.matcher(line);
+                if (timestamp.find()) {
+                    long millis = parseTimestamp(timestamp.group(1));
+                    if (millis >= 0) {
+                        from = from < 0 ? millis : Math.min(from, millis);
+                        to = Math.max(to, millis);
+                    }
+                    continue;
+                }
+                Matcher level = LEVEL_PATTERN.matcher(line);
+                if (level.find()) {
+                    try {
+                        levelCounts[ServerLogger.Level.valueOf(level.group(1)).ordinal()]++;
+                    } catch (IllegalArgumentException ignored) {
+                        // Unknown level written by an old client, not counted
+                    }
+                }
+            }
+        }
+        return createInfo(indexName, from, to, Files.size(segment), levelCounts);
+    }
+
+    private LogSegmentInfo createInfo(String file, long from, long to, long bytes, long[] levelCounts) {
+        long info = levelCounts[ServerLogger.Level.INFO.ordinal()];
+        long warning = levelCounts[ServerLogger.Level.WARNING.ordinal()];
+        long error = levelCounts[ServerLogger.Level.ERROR.ordinal()];
+        return new LogSegmentInfo(file, from, to, info + warning + error, bytes, info, warning, error);
+    }
+
+    private static long parseTimestamp(String text) {
+        try {
+            return LocalDateTime.parse(text.trim(), TIMESTAMP_FORMAT).atZone(ZONE).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private static LocalDate dayOf(long millis) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(millis), ZONE);
+    }
+}
@@ -38,9 +38,9 @@ public class OAuth2AuthenticationSuccessHandler implements AuthenticationSuccess
         user.setUsername(name);
         userRepository.update(user);
 
-        // Generate tokens
-        String accessToken = jwtToken.generateAccessToken(user.getUsername());
-        String refreshToken = jwtToken.generateRefreshToken(user.getUsername());
+        // Generate tokens (subject = login, with the user id and admin flag like a password login)
+        String accessToken = jwtToken.generateAccessToken(user.getLogin(), user.getId(), user.isAdmin());
+        String refreshToken = jwtToken.generateRefreshToken(user.getLogin(), user.getId(), user.isAdmin());
 
         // Save refresh token
      //   TokenService tokenService = new TokenService(tokenRepository, jwtToken);
@@ -80,9 +80,12 @@ public class OAuth2AuthenticationSuccessHandler implements AuthenticationSuccess
         user.setLogin(userDto.getUsername());
         user.setPassword(userDto.getPassword());
         user.setAdmin(userDto.isAdmin());
-        user.setAvatar(userDto.getAvatarBinary().getBytes());
         user.setAvatarFileName(userDto.getAvatarFileName());
-        userRepository.save(user);
+        if (!userRepository.save(user)) {
+            // Created by a concurrent login in the meantime, its row has the id the tokens need
+            return userRepository.findByLogin(userDto.getLogin())
+                    .orElseThrow(() -> new IllegalStateException("OAuth2 user " + email + " could not be created"));
+        }
         return user;
     }
     // TODO: changing pass when login throw OAuth
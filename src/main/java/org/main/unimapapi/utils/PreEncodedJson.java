@@ -0,0 +1,131 @@
+package org.main.unimapapi.utils;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * JSON response body encoded once and served many times
+ *
+ * Holds the UTF-8 JSON bytes plus one pre-compressed variant per content coding
+ * (currently gzip, a "br" variant can be added to the same map once a Brotli encoder is available)
+ * The strong ETag is derived from the SHA-256 of the JSON bytes, every coding gets its own suffix
+ *
+ * toResponse() answers If-None-Match with 304 and otherwise returns the cached bytes as they are,
+ * so no request serializes or compresses anything
+ */
+public class PreEncodedJson {
+    private static final String IDENTITY = "identity";
+    private static final String GZIP = "gzip";
+
+    private final String etagValue;
+    private final Map<String, byte[]> variants = new LinkedHashMap<>();
+
+    public PreEncodedJson(byte[] json) {
+        this.etagValue = sha256(json);
+        variants.put(IDENTITY, json);
+        variants.put(GZIP, gzip(json));
+    }
+
+    public String getEtag() {
+        return etag(IDENTITY);
+    }
+
+    public int size(String coding) {
+        byte[] body = variants.get(coding);
+        return body != null ? body.length : -1;
+    }
+
+    public ResponseEntity<byte[]> toResponse(String ifNoneMatch, String acceptEncoding) {
+        String coding = acceptsGzip(acceptEncoding) ? GZIP : IDENTITY;
+        String etag = etag(coding);
+
+        if (matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (!IDENTITY.equals(coding)) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, coding);
+        }
+        return builder.body(variants.get(coding));
+    }
+
+    private String etag(String coding) {
+        return IDENTITY.equals(coding) ? "\"" + etagValue + "\"" : "\"" + etagValue + "-" + coding + "\"";
+    }
+
+    // Any of the listed tags (weak or strong, any coding) refers to the same JSON content
+    private boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            for (String coding : variants.keySet()) {
+                if (tag.equals(etag(coding))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (tokens[0].trim().equalsIgnoreCase(GZIP)) {
+                return tokens.length < 2 || !tokens[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
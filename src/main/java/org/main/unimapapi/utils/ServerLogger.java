@@ -2,108 +2,117 @@ package org.main.unimapapi.utils;
 
 import org.main.unimapapi.configs.AppConfig;
 import org.main.unimapapi.dtos.LogEntry;
-import org.w3c.dom.*;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import java.io.File;
+
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Server and client logger
+ *
+ * Every call only formats one <log> element and hands it to the AsyncLogWriter of the file,
+ * the writing itself happens on the writer thread (see AsyncLogWriter)
+ * Files are split into daily / size-limited segments (see LogSegmentStore)
+ */
 public class ServerLogger {
     public enum Level {
         INFO, WARNING, ERROR
     }
 
-    private static final String SERVER_LOG_FILE = AppConfig.getSERVER_LOG_FILE();
-    private static final String CLIENT_LOG_FILE = AppConfig.getCLIENT_LOG_FILE();
     private static final Level CONFIGURED_LEVEL = Level.valueOf(AppConfig.getLogLevel().toUpperCase());
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final AsyncLogWriter SERVER_WRITER = createWriter(AppConfig.getSERVER_LOG_FILE());
+    private static final AsyncLogWriter CLIENT_WRITER = createWriter(AppConfig.getCLIENT_LOG_FILE());
+
+    static {
+        // Flush the queued records and close the XML documents when the JVM stops
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            SERVER_WRITER.close();
+            CLIENT_WRITER.close();
+        }, "log-writer-shutdown"));
+    }
 
     public static void logServer(Level level, String message) {
         if (level.ordinal() < CONFIGURED_LEVEL.ordinal()) {
             return;
         }
-        log(level, message, SERVER_LOG_FILE, -1);
+        SERVER_WRITER.append(createRecord(level, message, -1));
     }
 
     public static void logClient(LogEntry logEntry) {
-        log(Level.valueOf(logEntry.getLevel()), logEntry.getMessage(), CLIENT_LOG_FILE, logEntry.getUserId());
+        CLIENT_WRITER.append(toClientRecord(logEntry));
     }
 
+    // Serializes a client entry, throws IllegalArgumentException for an unknown level
+    public static LogRecord toClientRecord(LogEntry logEntry) {
+        return createRecord(Level.valueOf(logEntry.getLevel()), logEntry.getMessage(), logEntry.getUserId());
+    }
 
-    private static synchronized void log(Level level, String message, String filePath, int userId) {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-
-        saveLogToXml(timestamp, level.toString(), message, filePath, userId);
+    // Hands already serialized client records to the writer at once, returns how many were accepted
+    public static int logClientBatch(LogRecord[] records, int count) {
+        return CLIENT_WRITER.appendBatch(records, count);
     }
 
-    private static void removeWhitespaceNodes(Node node) {
-        NodeList children = node.getChildNodes();
-        for (int i = children.getLength() - 1; i >= 0; i--) {
-            Node child = children.item(i);
-            if (child.getNodeType() == Node.TEXT_NODE && child.getTextContent().trim().isEmpty()) {
-                node.removeChild(child);
-            } else if (child.getNodeType() == Node.ELEMENT_NODE) {
-                removeWhitespaceNodes(child);
-            }
-        }
+    // Backpressure and drop counters of both writers
+    public static Map<String, AsyncLogWriter.Stats> getStats() {
+        Map<String, AsyncLogWriter.Stats> stats = new LinkedHashMap<>();
+        stats.put("server", SERVER_WRITER.getStats());
+        stats.put("client", CLIENT_WRITER.getStats());
+        return stats;
     }
 
-    private static synchronized void saveLogToXml(String timestamp, String level, String message, String filePath, int userId) {
-        try {
-            File file = new File(filePath);
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc;
-
-            if (file.exists()) {
-                doc = builder.parse(file);
-                doc.getDocumentElement().normalize();
-            } else {
-                doc = builder.newDocument();
-                Element root = doc.createElement("logs");
-                doc.appendChild(root);
-            }
+    // Sealed segments of the server or client log, selected only through the segment index
+    public static List<LogSegmentInfo> findSegments(boolean client, long from, long to, Level minLevel) {
+        return (client ? CLIENT_WRITER : SERVER_WRITER).findSegments(from, to, minLevel);
+    }
 
-            Element root = doc.getDocumentElement();
+    private static AsyncLogWriter createWriter(String filePath) {
+        LogSegmentStore store = new LogSegmentStore(filePath, AppConfig.getLogSegmentMaxBytes(),
+                AppConfig.getLogRetentionDays(), AppConfig.getLogMaxSegments());
+        return new AsyncLogWriter(filePath, AppConfig.getLogBufferCapacity(), store);
+    }
 
-            removeWhitespaceNodes(root);
+    private static LogRecord createRecord(Level level, String message, int userId) {
+        LocalDateTime now = LocalDateTime.now();
 
-            Element log = doc.createElement("log");
+        StringBuilder xml = new StringBuilder(160 + (message == null ? 0 : message.length()));
+        xml.append("    <log>\n");
+        if (userId != -1) {
+            xml.append("        <userId>").append(userId).append("</userId>\n");
+        }
+        xml.append("        <timestamp>").append(TIMESTAMP_FORMAT.format(now)).append("</timestamp>\n");
+        xml.append("        <level>").append(level).append("</level>\n");
+        xml.append("        <message>");
+        appendEscaped(xml, message);
+        xml.append("</message>\n");
+        xml.append("    </log>\n");
+
+        return new LogRecord(System.currentTimeMillis(), level, xml.toString().getBytes(StandardCharsets.UTF_8));
+    }
 
-            if (userId != -1) {
-                Element userIdElem = doc.createElement("userId");
-                userIdElem.appendChild(doc.createTextNode(String.valueOf(userId)));
-                log.appendChild(userIdElem);
+    // Escapes markup characters and skips characters that are not allowed in XML 1.0
+    private static void appendEscaped(StringBuilder xml, String text) {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> xml.append("&lt;");
+                case '>' -> xml.append("&gt;");
+                case '&' -> xml.append("&amp;");
+                case '"' -> xml.append("&quot;");
+                case '\'' -> xml.append("&apos;");
+                default -> {
+                    if (c >= 0x20 || c == '\n' || c == '\r' || c == '\t') {
+                        xml.append(c);
+                    }
+                }
             }
-
-            Element timestampElem = doc.createElement("timestamp");
-            timestampElem.appendChild(doc.createTextNode(timestamp));
-            log.appendChild(timestampElem);
-
-            Element levelElem = doc.createElement("level");
-            levelElem.appendChild(doc.createTextNode(level));
-            log.appendChild(levelElem);
-
-            Element messageElem = doc.createElement("message");
-            messageElem.appendChild(doc.createTextNode(message));
-            log.appendChild(messageElem);
-
-            root.appendChild(log);
-
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-            DOMSource source = new DOMSource(doc);
-            StreamResult result = new StreamResult(file);
-            transformer.transform(source, result);
-        } catch (Exception e) {
-            System.err.println("SERVER LOGGING ERROR: " + e.getMessage());
         }
     }
-
-
 }
@@ -0,0 +1,100 @@
+package org.main.unimapapi.utils;
+
+import org.main.unimapapi.configs.AppConfig;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.PasswordAuthentication;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.Properties;
+
+/*
+ * One authenticated SMTP connection that is reused for many messages
+ *
+ * The Session is created once; the Transport is connected on first use,
+ * kept open between batches and closed after IDLE_CLOSE_MS without traffic
+ * or after an error (the next send reconnects)
+ * Not thread-safe, used only by the MailDispatcher thread
+ */
+public class SmtpConnection implements AutoCloseable {
+    private static final long IDLE_CLOSE_MS = 60_000;
+
+    private final Session session;
+    private final String sender;
+    private Transport transport;
+    private long lastUsed;
+
+    public SmtpConnection() {
+        this.sender = AppConfig.getSender();
+        this.session = createSession(sender, AppConfig.getPassword());
+    }
+
+    public void send(String recipient, String subject, String body) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress(sender));
+        message.addRecipient(Message.RecipientType.TO, new InternetAddress(recipient));
+        message.setSubject(subject);
+        message.setText(body);
+        message.saveChanges();
+
+        try {
+            connected().sendMessage(message, message.getAllRecipients());
+            lastUsed = System.currentTimeMillis();
+        } catch (MessagingException e) {
+            close();
+            throw e;
+        }
+    }
+
+    // Closes the connection if it was not used for a while (SMTP servers drop idle clients anyway)
+    public void closeIfIdle() {
+        if (transport != null && System.currentTimeMillis() - lastUsed > IDLE_CLOSE_MS) {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            ServerLogger.logServer(ServerLogger.Level.WARNING, "Failed to close SMTP connection: " + e.getMessage());
+        } finally {
+            transport = null;
+        }
+    }
+
+    private Transport connected() throws MessagingException {
+        if (transport == null || !transport.isConnected()) {
+            close();
+            Transport newTransport = session.getTransport("smtp");
+            newTransport.connect();
+            transport = newTransport;
+        }
+        return transport;
+    }
+
+    private static Session createSession(String sender, String password) {
+        Properties properties = new Properties();
+        properties.setProperty("mail.smtp.host", AppConfig.getHost());
+        properties.setProperty("mail.smtp.port", AppConfig.getPort());
+        properties.setProperty("mail.smtp.auth", String.valueOf(AppConfig.isMailAuth()));
+        properties.setProperty("mail.smtp.starttls.enable", String.valueOf(AppConfig.isMailStartTls()));
+        properties.setProperty("mail.smtp.connectiontimeout", "10000");
+        properties.setProperty("mail.smtp.timeout", "10000");
+        properties.setProperty("mail.smtp.writetimeout", "10000");
+
+        return Session.getInstance(properties, new javax.mail.Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication(sender, password);
+            }
+        });
+    }
+}
@@ -0,0 +1,14 @@
+package org.main.unimapapi.utils;
+
+/*
+ * Data of a JWT that passed signature verification
+ *
+ * userId is null for tokens issued without the user id claim
+ * expiresAt is in epoch milliseconds
+ */
+public record VerifiedToken(String subject, Long userId, boolean admin, long expiresAt) {
+
+    public boolean isExpired() {
+        return expiresAt <= System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,99 @@
+package org.main.unimapapi.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Bounded cache of JWTs whose signature was already verified
+ *
+ * Keyed by the SHA-256 digest of the compact token (32 bytes instead of the whole token),
+ * an entry lives only until the expiration of its token
+ * A hit skips Base64 decoding, JSON parsing and the HMAC check of the token
+ */
+public class VerifiedTokenCache {
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final int maxSize;
+    private final ConcurrentHashMap<TokenDigest, VerifiedToken> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private record TokenDigest(long a, long b, long c, long d) {
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size, int maxSize) {
+    }
+
+    public VerifiedTokenCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    // Returns the verified data of the token, or null if it is unknown or already expired
+    public VerifiedToken get(String token) {
+        TokenDigest key = digest(token);
+        VerifiedToken verified = entries.get(key);
+        if (verified == null) {
+            misses.increment();
+            return null;
+        }
+        if (verified.expiresAt() <= System.currentTimeMillis()) {
+            entries.remove(key, verified);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return verified;
+    }
+
+    public void put(String token, VerifiedToken verified) {
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(digest(token), verified);
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size(), maxSize);
+    }
+
+    // Removes expired entries first; if the cache is still full, drops an arbitrary tenth of it
+    private void evict() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Iterator<VerifiedToken> it = entries.values().iterator(); it.hasNext(); ) {
+            if (it.next().expiresAt() <= now) {
+                it.remove();
+                removed++;
+            }
+        }
+        if (entries.size() >= maxSize) {
+            int toRemove = Math.max(1, maxSize / 10);
+            for (Iterator<Map.Entry<TokenDigest, VerifiedToken>> it = entries.entrySet().iterator(); it.hasNext() && toRemove > 0; toRemove--) {
+                it.next();
+                it.remove();
+                removed++;
+            }
+        }
+        evictions.add(removed);
+    }
+
+    private static TokenDigest digest(String token) {
+        MessageDigest sha256 = SHA_256.get();
+        ByteBuffer hash = ByteBuffer.wrap(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        return new TokenDigest(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+    }
+}
@@ -0,0 +1,167 @@
+-- V1: baseline schema
+-- Idempotent: creates a new database, and brings a database created by the former initDataBase.sql
+-- (any version) to the same state without touching existing data
+
+-- Create avatar_blobs table (content-addressed avatar images, hash = SHA-256 hex of data)
+CREATE TABLE IF NOT EXISTS public.avatar_blobs (
+    hash CHAR(64) PRIMARY KEY,
+    data BYTEA NOT NULL,
+    size INTEGER NOT NULL
+);
+
+-- Create avatar_variants table (PNG thumbnails of an avatar, size = edge in px)
+CREATE TABLE IF NOT EXISTS public.avatar_variants (
+    hash CHAR(64) NOT NULL REFERENCES avatar_blobs(hash) ON DELETE CASCADE,
+    size INTEGER NOT NULL,
+    data BYTEA NOT NULL,
+    PRIMARY KEY (hash, size)
+);
+
+-- Create user_data table
+-- avatar_hash NULL = default avatar (bundled with the application as org.main.unimapapi/1.png)
+CREATE TABLE IF NOT EXISTS public.user_data (
+    id SERIAL PRIMARY KEY,
+    login VARCHAR(255) NOT NULL UNIQUE,
+    email VARCHAR(255) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL,
+    name VARCHAR(255) NOT NULL,
+    is_admin BOOLEAN NOT NULL DEFAULT FALSE,
+    is_premium BOOLEAN NOT NULL DEFAULT FALSE,
+    avatar_hash CHAR(64) REFERENCES avatar_blobs(hash),
+    avatar_file_name VARCHAR(255)  DEFAULT '1.png'
+);
+
+-- Create comments_subjects table
+CREATE TABLE IF NOT EXISTS public.comments_subjects (
+    comment_id SERIAL PRIMARY KEY,
+    user_id INTEGER NOT NULL,
+    subject_code VARCHAR(20) NOT NULL,
+    description TEXT NOT NULL,
+    rating VARCHAR(10) NOT NULL,
+    levelaccess INTEGER NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES user_data(id)
+);
+
+-- Create comments_teachers table
+CREATE TABLE IF NOT EXISTS public.comments_teachers (
+    comment_id SERIAL PRIMARY KEY,
+    user_id INTEGER NOT NULL,
+    teacher_id VARCHAR(20) NOT NULL,
+    description TEXT NOT NULL,
+    rating VARCHAR(10) NOT NULL,
+    levelaccess INTEGER NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES user_data(id)
+);
+
+-- Create subjects table
+CREATE TABLE IF NOT EXISTS public.subjects (
+    code VARCHAR(20) PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    type VARCHAR(50) NOT NULL,
+    credits INTEGER NOT NULL,
+    study_type VARCHAR(50) NOT NULL,
+    semester VARCHAR(50) NOT NULL,
+    languages TEXT NOT NULL,
+    completion_type VARCHAR(50) NOT NULL,
+    student_count INTEGER NOT NULL,
+    assesment_methods TEXT,
+    learning_outcomes TEXT,
+    course_contents TEXT,
+    planned_activities TEXT,
+    evaluation_methods TEXT
+);
+
+-- Create subject_evaluation table
+CREATE TABLE IF NOT EXISTS public.subject_evaluation (
+    id SERIAL PRIMARY KEY,
+    subject_code VARCHAR(20) NOT NULL,
+    grade VARCHAR(2) NOT NULL,
+    percent VARCHAR(10) NOT NULL,
+    FOREIGN KEY (subject_code) REFERENCES subjects(code)
+);
+
+-- Create teachers table
+CREATE TABLE IF NOT EXISTS public.teachers (
+    id VARCHAR(20) PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    email VARCHAR(255),
+    phone VARCHAR(20),
+    office VARCHAR(50)
+);
+
+-- Create teacher_subject_roles table
+CREATE TABLE IF NOT EXISTS public.teacher_subject_roles (
+    id SERIAL PRIMARY KEY,
+    teacher_id VARCHAR(20) NOT NULL,
+    subject_code VARCHAR(20) NOT NULL,
+    roles TEXT NOT NULL,
+    FOREIGN KEY (teacher_id) REFERENCES teachers(id),
+    FOREIGN KEY (subject_code) REFERENCES subjects(code)
+);
+
+-- Create confirm_codes table
+CREATE TABLE IF NOT EXISTS public.confirm_codes (
+    id SERIAL PRIMARY KEY,
+    id_code BIGINT NOT NULL,
+    code VARCHAR(255) NOT NULL,
+    exp_time TIMESTAMP NOT NULL,
+    FOREIGN KEY (id_code) REFERENCES user_data(id)
+);
+CREATE INDEX IF NOT EXISTS idx_confirm_codes_user_code ON public.confirm_codes (id_code, code);
+CREATE INDEX IF NOT EXISTS idx_confirm_codes_exp_time ON public.confirm_codes (exp_time);
+
+-- Create mail_queue table (outbox of outgoing emails, delivered by MailDispatcher)
+-- Rows are written in the same transaction as the data they belong to (e.g. confirm_codes)
+-- locked_until: lease of the dispatcher instance that claimed the row
+CREATE TABLE IF NOT EXISTS public.mail_queue (
+    id BIGSERIAL PRIMARY KEY,
+    recipient VARCHAR(255) NOT NULL,
+    subject VARCHAR(255) NOT NULL,
+    body TEXT NOT NULL,
+    status VARCHAR(10) NOT NULL DEFAULT 'PENDING',
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT now(),
+    last_error TEXT,
+    locked_until TIMESTAMP,
+    created_at TIMESTAMP NOT NULL DEFAULT now()
+);
+CREATE INDEX IF NOT EXISTS idx_mail_queue_pending ON public.mail_queue (next_attempt_at) WHERE status = 'PENDING';
+
+-- Databases from before the avatar store kept the image in user_data.avatar: move it to avatar_blobs
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = 'public' AND table_name = 'user_data' AND column_name = 'avatar') THEN
+        INSERT INTO avatar_blobs (hash, data, size)
+            SELECT DISTINCT encode(sha256(avatar), 'hex'), avatar, length(avatar) FROM user_data WHERE avatar IS NOT NULL
+            ON CONFLICT (hash) DO NOTHING;
+        ALTER TABLE user_data ADD COLUMN IF NOT EXISTS avatar_hash CHAR(64) REFERENCES avatar_blobs(hash);
+        UPDATE user_data SET avatar_hash = encode(sha256(avatar), 'hex') WHERE avatar IS NOT NULL;
+        ALTER TABLE user_data DROP COLUMN avatar;
+        DROP FUNCTION IF EXISTS get_default_avatar();
+    END IF;
+END $$;
+
+-- Columns added after the first version of the tables
+ALTER TABLE public.mail_queue ADD COLUMN IF NOT EXISTS locked_until TIMESTAMP;
+
+-- Create news table
+CREATE TABLE IF NOT EXISTS public.news (
+    id SERIAL PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    content TEXT NOT NULL,
+    date_of_creation TIMESTAMP NOT NULL
+);
+
+-- Indexes for the subject search (/resources/subjects/search)
+-- Each filter index ends with code, so a filtered page is read in keyset order
+CREATE INDEX IF NOT EXISTS idx_subjects_semester_code ON public.subjects (semester, code);
+CREATE INDEX IF NOT EXISTS idx_subjects_study_type_code ON public.subjects (study_type, code);
+CREATE INDEX IF NOT EXISTS idx_subjects_type_code ON public.subjects (type, code);
+CREATE INDEX IF NOT EXISTS idx_subjects_credits_code ON public.subjects (credits, code);
+CREATE INDEX IF NOT EXISTS idx_subjects_languages ON public.subjects USING GIN (string_to_array(languages, ','));
+
+-- Join keys of the subject grades and teacher roles
+CREATE INDEX IF NOT EXISTS idx_subject_evaluation_subject_code ON public.subject_evaluation (subject_code);
+CREATE INDEX IF NOT EXISTS idx_teacher_subject_roles_teacher_id ON public.teacher_subject_roles (teacher_id);
+CREATE INDEX IF NOT EXISTS idx_user_data_avatar_hash ON public.user_data (avatar_hash);
@@ -0,0 +1,12 @@
+-- V2: secondary indexes for the columns hot queries filter on
+
+-- UserRepository.findByUsername
+CREATE INDEX IF NOT EXISTS idx_user_data_name ON public.user_data (name);
+
+-- Comment lists of a subject / teacher (CommentsRepository)
+CREATE INDEX IF NOT EXISTS idx_comments_subjects_subject_code ON public.comments_subjects (subject_code);
+CREATE INDEX IF NOT EXISTS idx_comments_teachers_teacher_id ON public.comments_teachers (teacher_id);
+
+-- Deleting a user's comments / account (CommentsRepository.deleteUserComments)
+CREATE INDEX IF NOT EXISTS idx_comments_subjects_user_id ON public.comments_subjects (user_id);
+CREATE INDEX IF NOT EXISTS idx_comments_teachers_user_id ON public.comments_teachers (user_id);
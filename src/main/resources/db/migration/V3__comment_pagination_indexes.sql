@@ -0,0 +1,13 @@
+-- V3: keyset pagination of comment lists (CommentsRepository.findPage)
+
+-- sort=newest: WHERE entity = ? AND comment_id < ? ORDER BY comment_id DESC
+CREATE INDEX IF NOT EXISTS idx_comments_subjects_subject_code_id ON public.comments_subjects (subject_code, comment_id);
+CREATE INDEX IF NOT EXISTS idx_comments_teachers_teacher_id_id ON public.comments_teachers (teacher_id, comment_id);
+
+-- sort=rating: WHERE entity = ? AND (rating, comment_id) < (?, ?) ORDER BY rating DESC, comment_id DESC
+CREATE INDEX IF NOT EXISTS idx_comments_subjects_subject_code_rating ON public.comments_subjects (subject_code, rating, comment_id);
+CREATE INDEX IF NOT EXISTS idx_comments_teachers_teacher_id_rating ON public.comments_teachers (teacher_id, rating, comment_id);
+
+-- The single-column indexes of V2 are prefixes of the ones above
+DROP INDEX IF EXISTS public.idx_comments_subjects_subject_code;
+DROP INDEX IF EXISTS public.idx_comments_teachers_teacher_id;
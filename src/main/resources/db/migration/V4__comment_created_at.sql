@@ -0,0 +1,8 @@
+-- V4: creation time of comments (admin bulk deletion by time range)
+-- Comments that existed before this version get the time of the migration
+
+ALTER TABLE public.comments_subjects ADD COLUMN IF NOT EXISTS created_at TIMESTAMP NOT NULL DEFAULT now();
+ALTER TABLE public.comments_teachers ADD COLUMN IF NOT EXISTS created_at TIMESTAMP NOT NULL DEFAULT now();
+
+CREATE INDEX IF NOT EXISTS idx_comments_subjects_created_at ON public.comments_subjects (created_at);
+CREATE INDEX IF NOT EXISTS idx_comments_teachers_created_at ON public.comments_teachers (created_at);
@@ -0,0 +1,16 @@
+package org.main.unimapapi;
+
+import org.springframework.boot.SpringApplication;
+
+/*
+ * The application started with the test classpath (mvn spring-boot:test-run)
+ *
+ * Same configuration as UniMapApiApplication, plus the test-only components,
+ * e.g. SeedDataGenerator for benchmark data (--db.seed.enabled=true)
+ */
+public class TestUniMapApiApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.from(UniMapApiApplication::main).run(args);
+    }
+}
@@ -0,0 +1,206 @@
+package org.main.unimapapi.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncLogWriterTest {
+    private static final int PRODUCERS = 4;
+    private static final int RECORDS_PER_PRODUCER = 5_000;
+
+    @TempDir
+    Path tempDir;
+
+    // The ring is large enough for everything, so no record may be dropped
+    @Test
+    void recordsOfConcurrentProducersAreWrittenExactlyOnce() throws Exception {
+        CollectingStore store = new CollectingStore(tempDir);
+        AsyncLogWriter writer = new AsyncLogWriter(store.path, 1 << 16, store);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                awaitQuietly(start);
+                LogRecord[] batch = new LogRecord[4];
+                for (int i = 0; i < RECORDS_PER_PRODUCER; i += batch.length) {
+                    for (int j = 0; j < batch.length; j++) {
+                        batch[j] = record(producer + "-" + (i + j));
+                    }
+                    // Half of the records through the batch claim, half one by one
+                    if (i % 8 == 0) {
+                        writer.appendBatch(batch, batch.length);
+                    } else {
+                        for (LogRecord record : batch) {
+                            writer.append(record);
+                        }
+                    }
+                }
+            });
+            thread.start();
+            producers.add(thread);
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        writer.close();
+
+        List<String> lines = store.lines();
+        Set<String> distinct = new HashSet<>(lines);
+        assertEquals(PRODUCERS * RECORDS_PER_PRODUCER, lines.size());
+        assertEquals(lines.size(), distinct.size(), "duplicated records");
+        for (int p = 0; p < PRODUCERS; p++) {
+            for (int i = 0; i < RECORDS_PER_PRODUCER; i++) {
+                assertTrue(distinct.contains(p + "-" + i), "missing " + p + "-" + i);
+            }
+        }
+
+        AsyncLogWriter.Stats stats = writer.getStats();
+        assertEquals(PRODUCERS * RECORDS_PER_PRODUCER, stats.enqueued());
+        assertEquals(PRODUCERS * RECORDS_PER_PRODUCER, stats.written());
+        assertEquals(0, stats.dropped());
+    }
+
+    // While the writer is stuck in a write, a full ring drops new records instead of blocking, and counts them
+    @Test
+    void fullRingDropsAndCountsRecords() throws Exception {
+        CollectingStore store = new CollectingStore(tempDir);
+        store.blockWrites();
+        AsyncLogWriter writer = new AsyncLogWriter(store.path, 4, store);
+
+        assertTrue(writer.append(record("first")));
+        assertTrue(store.writeStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            assertTrue(writer.append(record("queued-" + i)));
+        }
+
+        assertFalse(writer.append(record("dropped-0")));
+        assertEquals(0, writer.appendBatch(new LogRecord[]{record("dropped-1"), record("dropped-2")}, 2));
+
+        AsyncLogWriter.Stats stats = writer.getStats();
+        assertEquals(5, stats.enqueued());
+        assertEquals(3, stats.dropped());
+        // One for the single record, one for the batch and one per record of its one-by-one fallback
+        assertEquals(4, stats.backpressureEvents());
+        assertEquals(4, stats.queueDepth());
+
+        store.releaseWrites();
+        writer.close();
+        assertEquals(List.of("first", "queued-0", "queued-1", "queued-2", "queued-3"), store.lines());
+        assertEquals(5, writer.getStats().written());
+    }
+
+    // close() returns only after everything queued before it was written
+    @Test
+    void closeDrainsQueuedRecords() throws Exception {
+        CollectingStore store = new CollectingStore(tempDir);
+        store.blockWrites();
+        AsyncLogWriter writer = new AsyncLogWriter(store.path, 64, store);
+
+        assertTrue(writer.append(record("first")));
+        assertTrue(store.writeStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 50; i++) {
+            assertTrue(writer.append(record("queued-" + i)));
+        }
+
+        Thread closer = new Thread(writer::close);
+        closer.start();
+        store.releaseWrites();
+        closer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(closer.isAlive());
+
+        assertEquals(51, store.lines().size());
+        assertTrue(store.closed);
+        // Nothing is accepted after close
+        assertFalse(writer.append(record("late")));
+        assertEquals(1, writer.getStats().dropped());
+    }
+
+    private static LogRecord record(String text) {
+        return new LogRecord(System.currentTimeMillis(), ServerLogger.Level.INFO, (text + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Keeps the written bytes in memory; writes can be held back to fill the ring
+    private static class CollectingStore extends LogSegmentStore {
+        private final String path;
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private final CountDownLatch writeStarted = new CountDownLatch(1);
+        private volatile CountDownLatch writesAllowed = new CountDownLatch(0);
+        private volatile boolean closed;
+
+        CollectingStore(Path directory) {
+            this(directory.resolve("test_logs.xml").toString());
+        }
+
+        private CollectingStore(String path) {
+            super(path, Long.MAX_VALUE, 1, 1);
+            this.path = path;
+        }
+
+        void blockWrites() {
+            writesAllowed = new CountDownLatch(1);
+        }
+
+        void releaseWrites() {
+            writesAllowed.countDown();
+        }
+
+        synchronized List<String> lines() {
+            String text = written.toString(StandardCharsets.UTF_8);
+            return text.isEmpty() ? List.of() : List.of(text.split("\n"));
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public boolean needsRoll(LogRecord record, int pendingBytes) {
+            return false;
+        }
+
+        @Override
+        public void account(LogRecord record) {
+        }
+
+        @Override
+        public void write(ByteBuffer buffer) {
+            writeStarted.countDown();
+            awaitQuietly(writesAllowed);
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            synchronized (this) {
+                written.writeBytes(bytes);
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
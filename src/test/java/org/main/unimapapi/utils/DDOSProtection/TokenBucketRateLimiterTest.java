@@ -0,0 +1,134 @@
+package org.main.unimapapi.utils.DDOSProtection;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.main.unimapapi.utils.DDOSProtection.TokenBucketRateLimiter.Limit;
+import org.main.unimapapi.utils.DDOSProtection.TokenBucketRateLimiter.RouteGroup;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketRateLimiterTest {
+    private static final String CLIENT = "10.0.0.1";
+
+    // Every group: burst of 10, one token per second
+    private final AtomicLong nanos = new AtomicLong(1_000_000_000L);
+    private TokenBucketRateLimiter limiter;
+
+    @BeforeEach
+    void createLimiter() {
+        Map<RouteGroup, Limit> limits = new EnumMap<>(RouteGroup.class);
+        for (RouteGroup group : RouteGroup.values()) {
+            limits.put(group, Limit.of(10, 1));
+        }
+        limiter = new TokenBucketRateLimiter(limits, nanos::get);
+    }
+
+    @AfterEach
+    void shutdownLimiter() {
+        limiter.shutdown();
+    }
+
+    @Test
+    void burstIsExhaustedAfterCapacityRequests() {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire(RouteGroup.AUTH, CLIENT), "request " + i);
+        }
+        assertTrue(limiter.tryAcquire(RouteGroup.AUTH, CLIENT) > 0);
+
+        TokenBucketRateLimiter.Stats stats = limiter.getStats();
+        assertEquals(10, stats.allowed());
+        assertEquals(1, stats.rejected());
+    }
+
+    @Test
+    void bucketsAreSeparatePerClientAndGroup() {
+        exhaust(RouteGroup.AUTH, CLIENT);
+
+        assertEquals(0, limiter.tryAcquire(RouteGroup.AUTH, "10.0.0.2"));
+        assertEquals(0, limiter.tryAcquire(RouteGroup.COMMENTS, CLIENT));
+    }
+
+    @Test
+    void tokensAreRefilledWithElapsedTime() {
+        exhaust(RouteGroup.AUTH, CLIENT);
+
+        advanceMillis(999);
+        assertTrue(limiter.tryAcquire(RouteGroup.AUTH, CLIENT) > 0);
+
+        advanceMillis(1);
+        assertEquals(0, limiter.tryAcquire(RouteGroup.AUTH, CLIENT));
+        assertTrue(limiter.tryAcquire(RouteGroup.AUTH, CLIENT) > 0);
+
+        // Never more than the burst, however long the client was idle
+        advanceMillis(TimeUnit.HOURS.toMillis(1));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire(RouteGroup.AUTH, CLIENT), "request " + i);
+        }
+        assertTrue(limiter.tryAcquire(RouteGroup.AUTH, CLIENT) > 0);
+    }
+
+    @Test
+    void retryAfterIsTheTimeUntilTheNextToken() {
+        exhaust(RouteGroup.AUTH, CLIENT);
+        assertEquals(1000, limiter.tryAcquire(RouteGroup.AUTH, CLIENT));
+
+        advanceMillis(250);
+        assertEquals(750, limiter.tryAcquire(RouteGroup.AUTH, CLIENT));
+
+        advanceMillis(750);
+        assertEquals(0, limiter.tryAcquire(RouteGroup.AUTH, CLIENT));
+    }
+
+    @Test
+    void retryAfterFollowsTheRefillRate() {
+        Map<RouteGroup, Limit> limits = new EnumMap<>(RouteGroup.class);
+        for (RouteGroup group : RouteGroup.values()) {
+            limits.put(group, Limit.of(1, 5));
+        }
+        TokenBucketRateLimiter fastLimiter = new TokenBucketRateLimiter(limits, nanos::get);
+        try {
+            assertEquals(0, fastLimiter.tryAcquire(RouteGroup.LOG, CLIENT));
+            assertEquals(200, fastLimiter.tryAcquire(RouteGroup.LOG, CLIENT));
+        } finally {
+            fastLimiter.shutdown();
+        }
+    }
+
+    @Test
+    void newClientsShareTheOverflowBucketOverMaxBuckets() {
+        for (int i = 0; i < TokenBucketRateLimiter.MAX_BUCKETS; i++) {
+            limiter.tryAcquire(RouteGroup.DEFAULT, "client-" + i);
+        }
+        assertEquals(TokenBucketRateLimiter.MAX_BUCKETS, limiter.getStats().buckets());
+
+        // The overflow bucket of the group holds one burst for all new clients together
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire(RouteGroup.DEFAULT, "new-client-" + i), "new client " + i);
+        }
+        assertTrue(limiter.tryAcquire(RouteGroup.DEFAULT, "new-client-10") > 0);
+
+        TokenBucketRateLimiter.Stats stats = limiter.getStats();
+        assertEquals(11, stats.overflowed());
+        assertEquals(TokenBucketRateLimiter.MAX_BUCKETS, stats.buckets());
+
+        // Clients that already have a bucket keep it
+        assertEquals(0, limiter.tryAcquire(RouteGroup.DEFAULT, "client-0"));
+    }
+
+    private void exhaust(RouteGroup group, String client) {
+        while (limiter.tryAcquire(group, client) == 0) {
+            // Take all tokens of the burst
+        }
+    }
+
+    private void advanceMillis(long millis) {
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
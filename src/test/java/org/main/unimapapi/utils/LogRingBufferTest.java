@@ -0,0 +1,160 @@
+package org.main.unimapapi.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogRingBufferTest {
+    private static final int PRODUCERS = 4;
+    private static final int RECORDS_PER_PRODUCER = 50_000;
+    private static final int BATCH = 8;
+
+    @Test
+    void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(2, new LogRingBuffer(2).capacity());
+        assertEquals(8, new LogRingBuffer(5).capacity());
+        assertEquals(1024, new LogRingBuffer(1024).capacity());
+    }
+
+    @Test
+    void offerFailsWhenFullAndSucceedsAfterPoll() {
+        LogRingBuffer ring = new LogRingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(record(i)));
+        }
+        assertFalse(ring.offer(record(4)));
+        assertEquals(4, ring.size());
+
+        assertEquals(0, ring.poll().timestamp());
+        assertTrue(ring.offer(record(4)));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, ring.poll().timestamp());
+        }
+        assertNull(ring.poll());
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    void offerBatchIsAllOrNothing() {
+        LogRingBuffer ring = new LogRingBuffer(4);
+        assertTrue(ring.offer(record(0)));
+        assertTrue(ring.offerBatch(new LogRecord[]{record(1), record(2)}, 2));
+
+        assertFalse(ring.offerBatch(new LogRecord[]{record(3), record(4)}, 2));
+        assertEquals(3, ring.size());
+        assertFalse(ring.offerBatch(new LogRecord[5], 5));
+
+        assertTrue(ring.offerBatch(new LogRecord[]{record(3)}, 1));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, ring.poll().timestamp());
+        }
+        assertNull(ring.poll());
+    }
+
+    // Producers use offer() and offerBatch() alternately; the consumer must see every record exactly once, in producer order
+    @Test
+    void concurrentProducersLoseAndDuplicateNothing() throws Exception {
+        LogRingBuffer ring = new LogRingBuffer(1024);
+        int total = PRODUCERS * RECORDS_PER_PRODUCER;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            producers.add(startThread(failure, () -> {
+                start.await();
+                LogRecord[] batch = new LogRecord[BATCH];
+                int i = 0;
+                while (i < RECORDS_PER_PRODUCER) {
+                    if ((i / BATCH) % 2 == 0 && i + BATCH <= RECORDS_PER_PRODUCER) {
+                        for (int j = 0; j < BATCH; j++) {
+                            batch[j] = record(id(producer, i + j));
+                        }
+                        while (!ring.offerBatch(batch, BATCH)) {
+                            Thread.onSpinWait();
+                        }
+                        i += BATCH;
+                    } else {
+                        LogRecord record = record(id(producer, i));
+                        while (!ring.offer(record)) {
+                            Thread.onSpinWait();
+                        }
+                        i++;
+                    }
+                }
+            }));
+        }
+
+        int[] seen = new int[total];
+        int[] nextPerProducer = new int[PRODUCERS];
+        Thread consumer = startThread(failure, () -> {
+            int received = 0;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (received < total && System.nanoTime() < deadline) {
+                LogRecord record = ring.poll();
+                if (record == null) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                int id = (int) record.timestamp();
+                int producer = id / RECORDS_PER_PRODUCER;
+                seen[id]++;
+                assertEquals(nextPerProducer[producer]++, id % RECORDS_PER_PRODUCER, "order of producer " + producer);
+                received++;
+            }
+        });
+
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        consumer.join(TimeUnit.SECONDS.toMillis(30));
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        for (Thread producer : producers) {
+            assertFalse(producer.isAlive(), "producer stuck on a full ring");
+        }
+
+        for (int id = 0; id < total; id++) {
+            assertEquals(1, seen[id], "record " + id);
+        }
+        assertNull(ring.poll());
+    }
+
+    private static int id(int producer, int sequence) {
+        return producer * RECORDS_PER_PRODUCER + sequence;
+    }
+
+    private static LogRecord record(long id) {
+        return new LogRecord(id, ServerLogger.Level.INFO, new byte[0]);
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    private static Thread startThread(AtomicReference<Throwable> failure, ThrowingRunnable body) {
+        Thread thread = new Thread(() -> {
+            try {
+                body.run();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+        // A stuck thread must not keep the test JVM alive
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
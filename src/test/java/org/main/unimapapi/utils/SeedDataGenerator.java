@@ -0,0 +1,179 @@
+package org.main.unimapapi.utils;
+
+import org.main.unimapapi.configs.DatabaseMigrator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Generator of synthetic data for benchmarks and load tests
+ *
+ * Test classpath only, never part of the application jar
+ * Runs once at startup (after the migrations) when db.seed.enabled=true, e.g. through TestUniMapApiApplication:
+ *   mvn spring-boot:test-run -Dspring-boot.run.arguments=--db.seed.enabled=true
+ * All generated keys start with SEED, a database that already contains them is left as it is
+ *
+ * Sizes: db.seed.subjects, db.seed.teachers, db.seed.roles-per-teacher, db.seed.users, db.seed.comments-per-subject
+ * (defaults: 2 000 subjects, 10 000 teachers with 10 roles each, 1 000 users, 20 comments per subject and teacher)
+ */
+@Component
+@ConditionalOnProperty(name = "db.seed.enabled", havingValue = "true")
+public class SeedDataGenerator implements ApplicationRunner {
+    private static final int BATCH_SIZE = 1000;
+    private static final String[] SEMESTERS = {"ZS", "LS"};
+    private static final String[] STUDY_TYPES = {"bachelor", "engineering", "doctoral"};
+    private static final String[] TYPES = {"povinny", "povinne volitelny", "volitelny"};
+    private static final String[] LANGUAGES = {"sk", "en", "sk,en"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Random random = new Random(42);
+
+    @Value("${db.seed.subjects:2000}")
+    private int subjects;
+    @Value("${db.seed.teachers:10000}")
+    private int teachers;
+    @Value("${db.seed.roles-per-teacher:10}")
+    private int rolesPerTeacher;
+    @Value("${db.seed.users:1000}")
+    private int users;
+    @Value("${db.seed.comments-per-subject:20}")
+    private int commentsPerSubject;
+
+    // The migrator is a dependency only so that the schema exists before seeding
+    public SeedDataGenerator(JdbcTemplate jdbcTemplate, DatabaseMigrator databaseMigrator) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Integer existing = jdbcTemplate.queryForObject("SELECT count(*) FROM subjects WHERE code LIKE 'SEED%'", Integer.class);
+        if (existing != null && existing > 0) {
+            ServerLogger.logServer(ServerLogger.Level.INFO, "Seed data already present, skipping");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        seedSubjects();
+        seedTeachers();
+        List<Long> userIds = seedUsers();
+        seedComments(userIds);
+        ServerLogger.logServer(ServerLogger.Level.INFO, "Seed data generated in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void seedSubjects() {
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> grades = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < subjects; i++) {
+            String code = subjectCode(i);
+            rows.add(new Object[]{code, "Seed subject " + i, pick(TYPES), 2 + random.nextInt(7), pick(STUDY_TYPES),
+                    pick(SEMESTERS), pick(LANGUAGES), "skuska", random.nextInt(500),
+                    "Assessment " + i, "Outcomes " + i, "Contents " + i, "Activities " + i, "Evaluation " + i});
+            for (String grade : new String[]{"A", "B", "C", "D", "E", "Fx"}) {
+                grades.add(new Object[]{code, grade, random.nextInt(40) + "%"});
+            }
+            if (rows.size() == BATCH_SIZE) {
+                flushSubjects(rows, grades);
+            }
+        }
+        flushSubjects(rows, grades);
+    }
+
+    private void flushSubjects(List<Object[]> rows, List<Object[]> grades) {
+        insert("""
+                INSERT INTO subjects (code, name, type, credits, study_type, semester, languages, completion_type,
+                                      student_count, assesment_methods, learning_outcomes, course_contents,
+                                      planned_activities, evaluation_methods)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)""", rows);
+        insert("INSERT INTO subject_evaluation (subject_code, grade, percent) VALUES (?, ?, ?)", grades);
+    }
+
+    private void seedTeachers() {
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> roles = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < teachers; i++) {
+            String id = String.format("SEED%06d", i);
+            rows.add(new Object[]{id, "Seed teacher " + i, "teacher" + i + "@seed.local", "+421000" + i, "Office " + (i % 300)});
+            for (int r = 0; r < rolesPerTeacher; r++) {
+                roles.add(new Object[]{id, subjectCode(random.nextInt(subjects)), r % 2 == 0 ? "prednasajuci" : "cviciaci,skusajuci"});
+            }
+            if (rows.size() == BATCH_SIZE) {
+                flushTeachers(rows, roles);
+            }
+        }
+        flushTeachers(rows, roles);
+    }
+
+    private void flushTeachers(List<Object[]> rows, List<Object[]> roles) {
+        insert("INSERT INTO teachers (id, name, email, phone, office) VALUES (?, ?, ?, ?, ?)", rows);
+        insert("INSERT INTO teacher_subject_roles (teacher_id, subject_code, roles) VALUES (?, ?, ?)", roles);
+    }
+
+    private List<Long> seedUsers() {
+        // One hash for everybody, BCrypt per user would dominate the run
+        String password = Hashing.hashPassword("seed-password");
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < users; i++) {
+            rows.add(new Object[]{"seed_user_" + i, "seed_user_" + i + "@seed.local", password, "Seed User " + i});
+            if (rows.size() == BATCH_SIZE) {
+                insert("INSERT INTO user_data (login, email, password, name) VALUES (?, ?, ?, ?)", rows);
+            }
+        }
+        insert("INSERT INTO user_data (login, email, password, name) VALUES (?, ?, ?, ?)", rows);
+        return jdbcTemplate.queryForList("SELECT id FROM user_data WHERE login LIKE 'seed\\_user\\_%'", Long.class);
+    }
+
+    private void seedComments(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        List<Object[]> subjectComments = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < subjects; i++) {
+            for (int c = 0; c < commentsPerSubject; c++) {
+                subjectComments.add(comment(userIds, subjectCode(i)));
+                if (subjectComments.size() == BATCH_SIZE) {
+                    insert("INSERT INTO comments_subjects (user_id, subject_code, description, rating, levelaccess) VALUES (?, ?, ?, ?, ?)", subjectComments);
+                }
+            }
+        }
+        insert("INSERT INTO comments_subjects (user_id, subject_code, description, rating, levelaccess) VALUES (?, ?, ?, ?, ?)", subjectComments);
+
+        List<Object[]> teacherComments = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < teachers; i++) {
+            for (int c = 0; c < commentsPerSubject; c++) {
+                teacherComments.add(comment(userIds, String.format("SEED%06d", i)));
+                if (teacherComments.size() == BATCH_SIZE) {
+                    insert("INSERT INTO comments_teachers (user_id, teacher_id, description, rating, levelaccess) VALUES (?, ?, ?, ?, ?)", teacherComments);
+                }
+            }
+        }
+        insert("INSERT INTO comments_teachers (user_id, teacher_id, description, rating, levelaccess) VALUES (?, ?, ?, ?, ?)", teacherComments);
+    }
+
+    private Object[] comment(List<Long> userIds, String target) {
+        return new Object[]{userIds.get(random.nextInt(userIds.size())), target,
+                "Seed comment " + random.nextInt(1_000_000), String.valueOf(1 + random.nextInt(5)), random.nextInt(2)};
+    }
+
+    // Inserts and clears the collected rows
+    private void insert(String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+            rows.clear();
+        }
+    }
+
+    private static String subjectCode(int index) {
+        return String.format("SEED%05d", index);
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}